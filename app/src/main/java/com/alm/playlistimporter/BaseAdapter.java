@@ -2,12 +2,24 @@ package com.alm.playlistimporter;
 
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import rx.Observable;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.Subscriptions;
 
 /**
  * Created by A. Labay on 05/01/17.
@@ -16,8 +28,20 @@ import java.util.Collection;
 
 public abstract class BaseAdapter<T, VH extends BaseAdapter.BaseHolder<T>> extends RecyclerView.Adapter<VH> {
 
+    private static final String TAG = BaseAdapter.class.getSimpleName();
+
     private ArrayList<T> mItems = new ArrayList<>();
 
+    /**
+     * Incremented on every change, to know if a diff still applies to the current items
+     */
+    private int mVersion = 0;
+
+    /**
+     * When set, items are read from it while binding instead of from the list
+     */
+    private PagedSource<T> mSource;
+
     protected LayoutInflater mInflater;
 
     private OnItemClickListener<T> mItemClickListener;
@@ -29,67 +53,184 @@ public abstract class BaseAdapter<T, VH extends BaseAdapter.BaseHolder<T>> exten
 
     @Override
     public void onBindViewHolder(VH holder, int position) {
-        holder.bind(mItems.get(position), mItemClickListener);
+        holder.bind(getItem(position), mItemClickListener);
+    }
+
+    /**
+     * Subclasses keeping their own items override this together with {@link #getItemCount()}.
+     */
+    protected T getItem(int position) {
+        return mSource != null ? mSource.get(position) : mItems.get(position);
     }
 
     @Override
     public int getItemCount() {
-        return mItems.size();
+        return mSource != null ? mSource.size() : mItems.size();
+    }
+
+    /**
+     * Shows the items of the source, only reading the ones that are bound.
+     * The other setters go back to the list of items, the rest of operations can't be used
+     * until they do.
+     */
+    public void setSource(@NonNull PagedSource<T> source) {
+        mItems.clear();
+        mSource = source;
+        mVersion++;
+        notifyDataSetChanged();
     }
 
     public void add(@NonNull T item) {
+        checkListMode();
         mItems.add(item);
-        notifyItemInserted(mItems.size());
+        mVersion++;
+        notifyItemInserted(mItems.size() - 1);
     }
 
     public void add(int pos, @NonNull T item) {
+        checkListMode();
         if (!checkBounds(pos)) {
             pos = 0; // or throw exception?
         }
         mItems.add(pos, item);
+        mVersion++;
         notifyItemInserted(pos);
     }
 
     public void addAll(@NonNull Collection<T> items) {
+        checkListMode();
         mItems.addAll(items);
-        notifyItemRangeInserted(mItems.size() - items.size(), mItems.size());
+        mVersion++;
+        notifyItemRangeInserted(mItems.size() - items.size(), items.size());
     }
 
     public void set(@NonNull T items) {
+        mSource = null;
         mItems.clear();
         mItems.add(items);
+        mVersion++;
         notifyDataSetChanged();
     }
 
     public void set(@NonNull Collection<T> items) {
+        mSource = null;
         mItems.clear();
         mItems.addAll(items);
+        mVersion++;
         notifyDataSetChanged();
     }
 
     public void move(int from, int to) {
+        checkListMode();
         if (!checkBounds(from) || !checkBounds(to))
             throw new IndexOutOfBoundsException();
 
         T temp = mItems.get(from);
         mItems.set(from, mItems.get(to));
         mItems.set(to, temp);
+        mVersion++;
         notifyItemMoved(from, to);
     }
 
     public void remove(int pos) {
+        checkListMode();
         if (!checkBounds(pos))
             throw new IndexOutOfBoundsException();
 
         mItems.remove(pos);
+        mVersion++;
         notifyItemRemoved(pos);
     }
 
     public void clear() {
+        mSource = null;
         mItems.clear();
+        mVersion++;
         notifyDataSetChanged();
     }
 
+    /**
+     * Replaces the items like {@link #set(Collection)}, but the changes are computed on a
+     * background thread and only the rows that changed are rebound and animated.
+     * @return the subscription of the diff, to unsubscribe when the adapter goes away
+     */
+    public Subscription update(@NonNull final List<T> items, @NonNull ItemComparator<T> comparator) {
+        if (mSource != null) {
+            set(items);
+            return Subscriptions.unsubscribed();
+        }
+
+        return diff(new ListDiffCallback<>(new ArrayList<>(mItems), items, comparator), new Action0() {
+            @Override
+            public void call() {
+                mItems.clear();
+                mItems.addAll(items);
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #update(List, ItemComparator)} but showing a paged source, like
+     * {@link #setSource(PagedSource)}. The diff compares the ids of the sources, no item is read.
+     */
+    public Subscription update(@NonNull final PagedSource<T> source) {
+        if (mSource == null && !mItems.isEmpty()) {
+            setSource(source);
+            return Subscriptions.unsubscribed();
+        }
+
+        return diff(new PagedDiffCallback<>(mSource, source), new Action0() {
+            @Override
+            public void call() {
+                mItems.clear();
+                mSource = source;
+            }
+        });
+    }
+
+    /**
+     * Moves aren't detected, they make the diff quadratic in the rows added and removed.
+     */
+    private Subscription diff(final DiffUtil.Callback callback, final Action0 apply) {
+        final int version = mVersion;
+
+        return Observable
+                .fromCallable(new Callable<DiffUtil.DiffResult>() {
+                    @Override
+                    public DiffUtil.DiffResult call() throws Exception {
+                        return DiffUtil.calculateDiff(callback, false);
+                    }
+                })
+                .subscribeOn(Schedulers.computation())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<DiffUtil.DiffResult>() {
+                    @Override
+                    public void call(DiffUtil.DiffResult result) {
+                        apply.call();
+                        // the items changed while diffing, the result is not valid for them
+                        if (version != mVersion) {
+                            notifyDataSetChanged();
+                        } else {
+                            result.dispatchUpdatesTo(BaseAdapter.this);
+                        }
+                        mVersion++;
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Log.e(TAG, "Cannot diff the items", throwable);
+                        apply.call();
+                        mVersion++;
+                        notifyDataSetChanged();
+                    }
+                });
+    }
+
+    private void checkListMode() {
+        if (mSource != null)
+            throw new IllegalStateException("The adapter is showing a paged source");
+    }
+
     private boolean checkBounds(int i) {
         return i >= 0 && i < mItems.size();
     }
@@ -103,6 +244,102 @@ public abstract class BaseAdapter<T, VH extends BaseAdapter.BaseHolder<T>> exten
         public abstract void bind(T item, OnItemClickListener<T> itemClickListener);
     }
 
+    /**
+     * Items read on demand, from a cursor or an index, instead of being copied into the adapter.
+     */
+    public interface PagedSource<T> {
+
+        int size();
+
+        T get(int position);
+
+        /**
+         * @return the id of the item at the position, diffs compare ids instead of reading items
+         */
+        long getId(int position);
+
+        /**
+         * @return true if the item at the position shows the same as the one at oldPosition
+         * of the old source, which has the same id
+         */
+        boolean hasSameContents(int position, PagedSource<T> old, int oldPosition);
+    }
+
+    /**
+     * Tells the diff which items are the same and which of them have to be rebound.
+     */
+    public interface ItemComparator<T> {
+
+        boolean isSameItem(T oldItem, T newItem);
+
+        boolean hasSameContents(T oldItem, T newItem);
+    }
+
+    private static class ListDiffCallback<T> extends DiffUtil.Callback {
+
+        private final List<T> mOld, mNew;
+        private final ItemComparator<T> mComparator;
+
+        ListDiffCallback(List<T> oldItems, List<T> newItems, ItemComparator<T> comparator) {
+            mOld = oldItems;
+            mNew = newItems;
+            mComparator = comparator;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOld.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNew.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mComparator.isSameItem(mOld.get(oldItemPosition), mNew.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mComparator.hasSameContents(mOld.get(oldItemPosition), mNew.get(newItemPosition));
+        }
+    }
+
+    private static class PagedDiffCallback<T> extends DiffUtil.Callback {
+
+        private final PagedSource<T> mOld, mNew;
+
+        /**
+         * @param oldSource null if the adapter was empty
+         */
+        PagedDiffCallback(PagedSource<T> oldSource, PagedSource<T> newSource) {
+            mOld = oldSource;
+            mNew = newSource;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOld != null ? mOld.size() : 0;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNew.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOld.getId(oldItemPosition) == mNew.getId(newItemPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mNew.hasSameContents(newItemPosition, mOld, oldItemPosition);
+        }
+    }
+
     public interface OnItemClickListener<T> {
 
         void onItemClick(View itemView, int pos, T item);
@@ -0,0 +1,130 @@
+package com.alm.playlistimporter;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Progress of the running imports, saved after every written chunk so an import killed
+ * halfway can continue where it was instead of starting again.
+ */
+public class ImportCheckpoints extends SQLiteOpenHelper {
+
+    private static final String DB_NAME = "imports.db";
+    private static final int DB_VERSION = 1;
+
+    private static final String TABLE_IMPORTS = "imports";
+    private static final String FILE = "file", PLAYLIST_ID = "playlist_id", NEXT_POSITION = "next_position";
+
+    private static ImportCheckpoints sInstance;
+
+    public static synchronized ImportCheckpoints getInstance(Context context) {
+        if (sInstance == null)
+            sInstance = new ImportCheckpoints(context.getApplicationContext());
+
+        return sInstance;
+    }
+
+    private ImportCheckpoints(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_IMPORTS + " ("
+                + FILE + " TEXT PRIMARY KEY, "
+                + PLAYLIST_ID + " INTEGER NOT NULL, "
+                + NEXT_POSITION + " INTEGER NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_IMPORTS);
+        onCreate(db);
+    }
+
+    /**
+     * @return where the import of the file was left, or null if it isn't running
+     */
+    public Checkpoint get(Uri file) {
+        Cursor c = getReadableDatabase().query(TABLE_IMPORTS,
+                new String[]{PLAYLIST_ID, NEXT_POSITION},
+                FILE + "=?", new String[]{file.toString()},
+                null, null, null);
+
+        Checkpoint checkpoint = null;
+        if (c.moveToFirst())
+            checkpoint = new Checkpoint(c.getLong(0), c.getInt(1));
+        c.close();
+
+        return checkpoint;
+    }
+
+    /**
+     * Registers a new import of the file into the playlist, starting from the first entry.
+     */
+    public Checkpoint start(Uri file, long playlistId) {
+        ContentValues v = new ContentValues(3);
+        v.put(FILE, file.toString());
+        v.put(PLAYLIST_ID, playlistId);
+        v.put(NEXT_POSITION, 0);
+        getWritableDatabase().insertWithOnConflict(TABLE_IMPORTS, null, v, SQLiteDatabase.CONFLICT_REPLACE);
+
+        return new Checkpoint(playlistId, 0);
+    }
+
+    /**
+     * @param nextPosition position of the first entry not written yet
+     */
+    public void advance(Uri file, int nextPosition) {
+        ContentValues v = new ContentValues(1);
+        v.put(NEXT_POSITION, nextPosition);
+        getWritableDatabase().update(TABLE_IMPORTS, v, FILE + "=?", new String[]{file.toString()});
+    }
+
+    /**
+     * Forgets the import, either because it finished or because it was rolled back.
+     */
+    public void finish(Uri file) {
+        getWritableDatabase().delete(TABLE_IMPORTS, FILE + "=?", new String[]{file.toString()});
+    }
+
+    /**
+     * @return the files whose import didn't finish
+     */
+    public List<Uri> pending() {
+        Cursor c = getReadableDatabase().query(TABLE_IMPORTS, new String[]{FILE},
+                null, null, null, null, null);
+
+        List<Uri> files = new ArrayList<>(c.getCount());
+        while (c.moveToNext())
+            files.add(Uri.parse(c.getString(0)));
+        c.close();
+
+        return files;
+    }
+
+    public static class Checkpoint {
+
+        public final long playlistId;
+
+        /**
+         * Entries before this position are already in the playlist
+         */
+        public final int nextPosition;
+
+        Checkpoint(long playlistId, int nextPosition) {
+            this.playlistId = playlistId;
+            this.nextPosition = nextPosition;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.alm.playlistimporter;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.MediaStore;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func1;
+import rx.observables.ConnectableObservable;
+import rx.schedulers.Schedulers;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Import of a single playlist file. The playlist is created, the entries are read, resolved
+ * and written in chunks, and a checkpoint is saved after every chunk. A job for a file with a
+ * checkpoint continues from it, without resolving or writing the entries already done again.
+ *
+ * A playlist with the same name that already has members is synced instead, see
+ * {@link PlaylistSync}. Syncs save no checkpoints, they start over if interrupted and only
+ * write what the interrupted one didn't.
+ */
+public class ImportJob {
+
+    public static final String TAG = ImportJob.class.getSimpleName();
+
+    private final Context mContext;
+    private final ContentResolver mResolver;
+    private final ImportCheckpoints mCheckpoints;
+    private final Uri mFile;
+    private final ImportStats mStats;
+
+    private final ConnectableObservable<List<Track>> mResults;
+    private boolean mStarted = false;
+
+    private volatile long mPlaylistId = -1;
+    private volatile boolean mSyncing = false;
+
+    public ImportJob(Context context, Uri file) {
+        mContext = context.getApplicationContext();
+        mResolver = mContext.getContentResolver();
+        mCheckpoints = ImportCheckpoints.getInstance(mContext);
+        mFile = file;
+        mStats = new ImportStats(file.getLastPathSegment());
+        mResults = create().publish();
+    }
+
+    public Uri getFile() {
+        return mFile;
+    }
+
+    public ImportStats getStats() {
+        return mStats;
+    }
+
+    /**
+     * @return the playlist being filled, or -1 if it isn't created yet
+     */
+    public long getPlaylistId() {
+        return mPlaylistId;
+    }
+
+    /**
+     * @return the written chunks of tracks, in the order they are parsed, which isn't always
+     * their position. Only the ones written after subscribing are received.
+     */
+    public Observable<List<Track>> getResults() {
+        return mResults;
+    }
+
+    /**
+     * Starts importing, the following calls do nothing. Must be called from the main thread.
+     */
+    public void start() {
+        if (mStarted)
+            return;
+
+        mStarted = true;
+        mResults.connect();
+    }
+
+    public boolean isStarted() {
+        return mStarted;
+    }
+
+    /**
+     * Every provider access (playlist creation, member writes and the rollback on error)
+     * happens on io threads.
+     */
+    private Observable<List<Track>> create() {
+        return start(new Callable<ImportCheckpoints.Checkpoint>() {
+                    @Override
+                    public ImportCheckpoints.Checkpoint call() throws Exception {
+                        mStats.start();
+                        return resumeOrCreate();
+                    }
+                }, new Func1<ImportCheckpoints.Checkpoint, Observable<List<Track>>>() {
+                    @Override
+                    public Observable<List<Track>> call(ImportCheckpoints.Checkpoint checkpoint) {
+                        Observable<List<Track>> chunks = chunks(
+                                PlaylistReader.execute(mContext, mFile, mStats, checkpoint.nextPosition));
+
+                        final PlaylistSync sync = checkpoint.nextPosition == 0
+                                ? new PlaylistSync(mResolver, checkpoint.playlistId, mStats) : null;
+                        mSyncing = sync != null && !sync.isEmpty();
+                        if (mSyncing) {
+                            Log.i(TAG, "Syncing " + mFile + " with playlist " + checkpoint.playlistId);
+                            return chunks
+                                    .map(sync)
+                                    .doOnCompleted(new Action0() {
+                                        @Override
+                                        public void call() {
+                                            sync.finish();
+                                        }
+                                    });
+                        }
+
+                        final WrittenPositions written = new WrittenPositions(checkpoint.nextPosition);
+                        return chunks
+                                .map(new PlaylistWriter(mResolver, checkpoint.playlistId, mStats))
+                                .doOnNext(new Action1<List<Track>>() {
+                                    @Override
+                                    public void call(List<Track> tracks) {
+                                        int next = written.next();
+                                        if (written.add(tracks) != next)
+                                            mCheckpoints.advance(mFile, written.next());
+                                    }
+                                });
+                    }
+                })
+                .doOnCompleted(new Action0() {
+                    @Override
+                    public void call() {
+                        mCheckpoints.finish(mFile);
+                    }
+                })
+                .doOnTerminate(new Action0() {
+                    @Override
+                    public void call() {
+                        mStats.finish();
+                    }
+                })
+                .doOnError(new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        mStats.failed(throwable);
+                        if (!mSyncing)
+                            deletePlaylist(); // the members it had before are kept
+                        mCheckpoints.finish(mFile);
+                    }
+                });
+    }
+
+    /**
+     * Runs start on an io thread, and the import it returns is subscribed on that same thread.
+     * The reader waits there for requests, so nothing below it may use subscribeOn, see
+     * {@link PacedOnSubscribe}.
+     */
+    static <T> Observable<List<Track>> start(Callable<T> start, Func1<T, Observable<List<Track>>> run) {
+        return Observable
+                .fromCallable(start)
+                .subscribeOn(Schedulers.io())
+                .flatMap(run);
+    }
+
+    /**
+     * @return the tracks in chunks to write, emitted on an io thread so parsing goes on while
+     * the previous chunk is written
+     */
+    static Observable<List<Track>> chunks(Observable<Track> tracks) {
+        return tracks
+                .buffer(PlaylistWriter.BATCH_SIZE)
+                .observeOn(Schedulers.io());
+    }
+
+    private ImportCheckpoints.Checkpoint resumeOrCreate() {
+        ImportCheckpoints.Checkpoint checkpoint = mCheckpoints.get(mFile);
+        if (checkpoint != null && playlistExists(checkpoint.playlistId)) {
+            Log.i(TAG, "Resuming " + mFile + " from entry " + checkpoint.nextPosition);
+
+            // a chunk may have been written after the last checkpoint was saved, from the
+            // start the playlist is synced instead and those members are kept
+            if (checkpoint.nextPosition > 0)
+                mResolver.delete(MediaStore.Audio.Playlists.Members.getContentUri("external", checkpoint.playlistId),
+                        MediaStore.Audio.Playlists.Members.PLAY_ORDER + ">=?",
+                        new String[]{"" + checkpoint.nextPosition});
+        } else {
+            long id = createPlaylist(getDefaultName(mFile));
+            if (id < 0)
+                throw new IllegalStateException("Cannot create playlist, try again.");
+
+            checkpoint = mCheckpoints.start(mFile, id);
+        }
+
+        mPlaylistId = checkpoint.playlistId;
+        return checkpoint;
+    }
+
+    private String getDefaultName(Uri uri) {
+        String s = uri.getLastPathSegment();
+        if (!TextUtils.isEmpty(s)) {
+            return s.substring(0, s.lastIndexOf("."));
+        }
+
+        return "Playlist_" + DateFormat.getDateInstance(DateFormat.SHORT)
+                .format(new Date());
+    }
+
+    private boolean playlistExists(long id) {
+        Cursor c = mResolver.query(MediaStore.Audio.Playlists.EXTERNAL_CONTENT_URI,
+                new String[]{MediaStore.Audio.Playlists._ID},
+                MediaStore.Audio.Playlists._ID + "=?", new String[]{"" + id},
+                null);
+        if (c == null)
+            return false;
+
+        boolean exists = c.moveToFirst();
+        c.close();
+        return exists;
+    }
+
+    private long createPlaylist(String name) {
+        Cursor pCursor = null;
+        try {
+            pCursor = mResolver.query(MediaStore.Audio.Playlists.EXTERNAL_CONTENT_URI,
+                    new String[]{MediaStore.Audio.Playlists._ID},
+                    MediaStore.Audio.Playlists.NAME + "=?", new String[]{name},
+                    null);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        long pId = -1;
+        if (pCursor != null && pCursor.moveToFirst()) {
+            pId = pCursor.getLong(0);
+        }
+
+        if (pCursor != null)
+            pCursor.close();
+
+        if (pId != -1)
+            return pId;
+
+        ContentValues values = new ContentValues(1);
+        values.put(MediaStore.Audio.Playlists.NAME, name);
+
+        Uri uri = mResolver.insert(MediaStore.Audio.Playlists.EXTERNAL_CONTENT_URI, values);
+        if (uri != null) {
+            return ContentUris.parseId(uri);
+        }
+
+        return -1;
+    }
+
+    private void deletePlaylist() {
+        if (mPlaylistId < 0)
+            return;
+
+        mResolver.delete(MediaStore.Audio.Playlists.EXTERNAL_CONTENT_URI,
+                MediaStore.Audio.Playlists._ID + "=?",
+                new String[]{"" + mPlaylistId});
+        mPlaylistId = -1;
+    }
+}
@@ -0,0 +1,191 @@
+package com.alm.playlistimporter;
+
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
+import android.os.IBinder;
+import android.support.annotation.MainThread;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Runs the imports outside of the activity. The intents are redelivered if the process is
+ * killed, so the system restarts the service and every import continues from its checkpoint.
+ *
+ * Only a few imports run at the same time, the rest wait in order. They all share the
+ * library index, see {@link LibraryMatching}.
+ */
+public class ImportService extends Service {
+
+    public static final String TAG = ImportService.class.getSimpleName();
+
+    private static final String EXTRA_FILE = "extra_file";
+
+    /**
+     * Every import already resolves on all the resolver threads of {@link PlaylistReader},
+     * running more of them at once only makes them compete for those and for the provider
+     */
+    private static final int MAX_RUNNING = 2;
+
+    /**
+     * Imports of this process, only accessed from the main thread
+     */
+    private static final Map<Uri, ImportJob> sJobs = new LinkedHashMap<>();
+
+    /**
+     * Starts importing the file, or returns its import if it's already running.
+     */
+    @MainThread
+    public static ImportJob start(Context context, Uri file) {
+        ImportJob job = getJob(context, file);
+
+        Intent intent = new Intent(context, ImportService.class);
+        intent.putExtra(EXTRA_FILE, file);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        context.startService(intent);
+
+        return job;
+    }
+
+    /**
+     * @return the imports running or waiting to run, oldest first
+     */
+    @MainThread
+    public static List<ImportJob> getJobs() {
+        return new ArrayList<>(sJobs.values());
+    }
+
+    /**
+     * Starts again the imports left unfinished, in case the system didn't restart the service.
+     * @param resumed called on the main thread with every import started again
+     */
+    @MainThread
+    public static void resumePending(final Context context, final Action1<ImportJob> resumed) {
+        final Context appContext = context.getApplicationContext();
+        Observable
+                .fromCallable(new Callable<List<Uri>>() {
+                    @Override
+                    public List<Uri> call() throws Exception {
+                        return ImportCheckpoints.getInstance(appContext).pending();
+                    }
+                })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<List<Uri>>() {
+                    @Override
+                    public void call(List<Uri> files) {
+                        for (Uri file : files) {
+                            if (!sJobs.containsKey(file))
+                                resumed.call(start(appContext, file));
+                        }
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Log.e(TAG, "Cannot read the pending imports", throwable);
+                    }
+                });
+    }
+
+    private static ImportJob getJob(Context context, Uri file) {
+        ImportJob job = sJobs.get(file);
+        if (job == null) {
+            job = new ImportJob(context, file);
+            sJobs.put(file, job);
+        }
+
+        return job;
+    }
+
+    private final ArrayDeque<ImportJob> mWaiting = new ArrayDeque<>();
+    private int mRunning = 0;
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        Uri file = intent != null ? (Uri) intent.getParcelableExtra(EXTRA_FILE) : null;
+        if (file == null) {
+            stopIfIdle();
+            return START_NOT_STICKY;
+        }
+
+        ImportJob job = getJob(this, file);
+        if (!job.isStarted() && !mWaiting.contains(job)) {
+            if (mRunning < MAX_RUNNING) {
+                run(job);
+            } else {
+                mWaiting.add(job);
+            }
+        }
+        return START_REDELIVER_INTENT;
+    }
+
+    private void run(final ImportJob job) {
+        mRunning++;
+
+        // keeps the import running when nobody is showing it
+        job.getResults()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Subscriber<List<Track>>() {
+                    @Override
+                    public void onCompleted() {
+                        finished(job);
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        Log.e(TAG, "Import failed: " + job.getFile(), e);
+                        finished(job);
+                    }
+
+                    @Override
+                    public void onNext(List<Track> tracks) {
+                    }
+                });
+        job.start();
+    }
+
+    private void finished(ImportJob job) {
+        sJobs.remove(job.getFile());
+        mRunning--;
+        if (!mWaiting.isEmpty())
+            run(mWaiting.poll());
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            try {
+                getContentResolver().releasePersistableUriPermission(job.getFile(),
+                        Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            } catch (SecurityException ignored) {
+                // the permission wasn't persisted
+            }
+        }
+
+        stopIfIdle();
+    }
+
+    private void stopIfIdle() {
+        if (sJobs.isEmpty())
+            stopSelf();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+}
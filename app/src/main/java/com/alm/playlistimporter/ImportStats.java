@@ -0,0 +1,327 @@
+package com.alm.playlistimporter;
+
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Counters and latency histograms of a single import. They are updated from the parsing,
+ * resolving and writing threads and read from the main thread to show the progress.
+ */
+public class ImportStats {
+
+    private final String mName;
+    private volatile long mStart = -1, mEnd = -1;
+    private volatile String mError;
+
+    private final AtomicLong mBytesRead = new AtomicLong();
+    private volatile long mBytesExpected = -1;
+
+    private final AtomicInteger mEntries = new AtomicInteger(), mFromCache = new AtomicInteger(),
+            mFromLibrary = new AtomicInteger(), mUnmatched = new AtomicInteger(),
+            mWritten = new AtomicInteger(), mWriteFailures = new AtomicInteger(),
+            mKept = new AtomicInteger(), mMoved = new AtomicInteger(), mRemoved = new AtomicInteger();
+
+    /**
+     * Whole parsing of the file, library lookups of single entries and bulk inserts of chunks
+     */
+    public final Histogram parse = new Histogram(), lookup = new Histogram(), write = new Histogram();
+
+    public ImportStats(String name) {
+        mName = name;
+    }
+
+    /**
+     * @param bytes how many bytes the parser will read in total, or -1 if it's unknown
+     */
+    public void setExpectedBytes(long bytes) {
+        mBytesExpected = bytes;
+    }
+
+    /**
+     * @return the stream counting every byte read from it
+     */
+    public InputStream count(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0)
+                    mBytesRead.incrementAndGet();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int count) throws IOException {
+                int read = super.read(buffer, offset, count);
+                if (read > 0)
+                    mBytesRead.addAndGet(read);
+                return read;
+            }
+
+            @Override
+            public long skip(long count) throws IOException {
+                long skipped = super.skip(count);
+                mBytesRead.addAndGet(skipped);
+                return skipped;
+            }
+        };
+    }
+
+    /**
+     * For files read without a counted stream
+     */
+    public void setBytesRead(long bytes) {
+        mBytesRead.set(bytes);
+    }
+
+    public void resolvedFromCache() {
+        mEntries.incrementAndGet();
+        mFromCache.incrementAndGet();
+    }
+
+    public void resolvedFromLibrary() {
+        mEntries.incrementAndGet();
+        mFromLibrary.incrementAndGet();
+    }
+
+    public void unmatched() {
+        mEntries.incrementAndGet();
+        mUnmatched.incrementAndGet();
+    }
+
+    public void written(int count, boolean succeeded) {
+        if (succeeded)
+            mWritten.addAndGet(count);
+        else
+            mWriteFailures.addAndGet(count);
+    }
+
+    /**
+     * Members of a synced playlist left as they were
+     */
+    public void kept(int count) {
+        mKept.addAndGet(count);
+    }
+
+    /**
+     * Members of a synced playlist given a new play order
+     */
+    public void moved(int count, boolean succeeded) {
+        if (succeeded)
+            mMoved.addAndGet(count);
+        else
+            mWriteFailures.addAndGet(count);
+    }
+
+    /**
+     * Members of a synced playlist no longer in the file
+     */
+    public void removed(int count, boolean succeeded) {
+        if (succeeded)
+            mRemoved.addAndGet(count);
+        else
+            mWriteFailures.addAndGet(count);
+    }
+
+    /**
+     * Called when the import stops waiting for the others and starts reading
+     */
+    public void start() {
+        mStart = SystemClock.elapsedRealtime();
+    }
+
+    public void finish() {
+        if (mStart < 0)
+            start();
+        mEnd = SystemClock.elapsedRealtime();
+    }
+
+    public void failed(Throwable e) {
+        mError = e.getLocalizedMessage() != null ? e.getLocalizedMessage() : e.toString();
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    private long getElapsed() {
+        if (mStart < 0)
+            return 0;
+
+        return (mEnd >= 0 ? mEnd : SystemClock.elapsedRealtime()) - mStart;
+    }
+
+    public Progress getProgress() {
+        long elapsed = getElapsed();
+        int entries = mEntries.get();
+        float rate = elapsed > 0 ? entries * 1000f / elapsed : 0;
+
+        float fraction = -1;
+        long eta = -1;
+        if (mBytesExpected > 0) {
+            fraction = Math.min(1f, (float) mBytesRead.get() / mBytesExpected);
+            if (fraction > 0)
+                eta = (long) (elapsed * (1 - fraction) / fraction);
+        }
+
+        return new Progress(mName, entries, rate, fraction, eta, mStart < 0, mEnd >= 0, mError);
+    }
+
+    /**
+     * @return the summary of the import, to be attached to bug reports
+     */
+    public JSONObject toJson() throws JSONException {
+        Progress progress = getProgress();
+        JSONObject json = new JSONObject();
+        json.put("file", mName);
+        json.put("finished", mEnd >= 0);
+        json.put("error", mError);
+        json.put("elapsed_ms", getElapsed());
+        json.put("bytes_read", mBytesRead.get());
+        json.put("bytes_expected", mBytesExpected);
+        json.put("entries", progress.entries);
+        json.put("entries_per_second", progress.rate);
+        json.put("from_cache", mFromCache.get());
+        json.put("from_library", mFromLibrary.get());
+        json.put("unmatched", mUnmatched.get());
+        json.put("written", mWritten.get());
+        json.put("kept", mKept.get());
+        json.put("moved", mMoved.get());
+        json.put("removed", mRemoved.get());
+        json.put("write_failures", mWriteFailures.get());
+        json.put("parse", parse.toJson());
+        json.put("lookup", lookup.toJson());
+        json.put("write", write.toJson());
+        return json;
+    }
+
+    public static class Progress {
+
+        public final String name;
+
+        public final int entries;
+
+        /**
+         * Entries resolved per second
+         */
+        public final float rate;
+
+        /**
+         * Part of the file already read, between 0 and 1, or -1 if the size is unknown
+         */
+        public final float fraction;
+
+        /**
+         * Estimated milliseconds until the file is read, or -1 if unknown
+         */
+        public final long eta;
+
+        /**
+         * The import hasn't started yet, other imports are running
+         */
+        public final boolean waiting;
+
+        public final boolean finished;
+
+        /**
+         * Why the import failed, or null
+         */
+        public final String error;
+
+        Progress(String name, int entries, float rate, float fraction, long eta,
+                 boolean waiting, boolean finished, String error) {
+            this.name = name;
+            this.entries = entries;
+            this.rate = rate;
+            this.fraction = fraction;
+            this.eta = eta;
+            this.waiting = waiting;
+            this.finished = finished;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Latencies in buckets of powers of two microseconds, so recording never allocates or locks.
+     */
+    public static class Histogram {
+
+        private static final int BUCKETS = 32;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong mCount = new AtomicLong(), mTotal = new AtomicLong(), mMax = new AtomicLong();
+
+        /**
+         * @param start value of {@link System#nanoTime()} when the measured work started
+         */
+        public void recordSince(long start) {
+            record(System.nanoTime() - start);
+        }
+
+        public void record(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            mBuckets.incrementAndGet(bucket);
+            mCount.incrementAndGet();
+            mTotal.addAndGet(micros);
+
+            long max;
+            do {
+                max = mMax.get();
+            } while (micros > max && !mMax.compareAndSet(max, micros));
+        }
+
+        public long count() {
+            return mCount.get();
+        }
+
+        /**
+         * @return the upper bound, in microseconds, of the bucket having the percentile
+         */
+        public long percentile(float p) {
+            long count = mCount.get();
+            if (count == 0)
+                return 0;
+
+            long rank = (long) Math.ceil(p * count), seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += mBuckets.get(i);
+                if (seen >= rank)
+                    return Math.min(1L << i, mMax.get());
+            }
+            return mMax.get();
+        }
+
+        JSONObject toJson() throws JSONException {
+            long count = mCount.get();
+            JSONObject json = new JSONObject();
+            json.put("count", count);
+            json.put("total_us", mTotal.get());
+            json.put("mean_us", count > 0 ? mTotal.get() / count : 0);
+            json.put("p50_us", percentile(0.5f));
+            json.put("p90_us", percentile(0.9f));
+            json.put("p99_us", percentile(0.99f));
+            json.put("max_us", mMax.get());
+
+            // bucket i counts the latencies below 2^i microseconds
+            JSONArray buckets = new JSONArray();
+            for (int i = 0; i < BUCKETS; i++)
+                buckets.put(mBuckets.get(i));
+            json.put("buckets", buckets);
+            return json;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.alm.playlistimporter;
+
+import android.content.ContentResolver;
+import android.support.annotation.WorkerThread;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Keeps the {@link LibraryIndex} playlist entries are matched against, so imports running
+ * together or one after another load the library once. It's only loaded again when the
+ * library changes.
+ */
+public class LibraryMatching {
+
+    private static final float FUZZY_THRESHOLD = FuzzyMatcher.DEFAULT_THRESHOLD;
+
+    private static LibraryIndex sIndex;
+    private static String sGeneration;
+
+    @WorkerThread
+    public static synchronized LibraryIndex get(ContentResolver cr) {
+        String generation = MediaStoreLibrarySource.getGeneration(cr);
+        if (sIndex == null || generation == null || !generation.equals(sGeneration)) {
+            sIndex = LibraryIndex.load(new MediaStoreLibrarySource(cr), new FuzzyMatcher(FUZZY_THRESHOLD));
+            sGeneration = generation;
+        }
+
+        return sIndex;
+    }
+}
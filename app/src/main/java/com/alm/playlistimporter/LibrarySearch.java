@@ -0,0 +1,28 @@
+package com.alm.playlistimporter;
+
+import android.content.ContentResolver;
+import android.support.annotation.WorkerThread;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Keeps the {@link SearchIndex} of the device library between searches, it's only loaded
+ * again when the library changes.
+ */
+public class LibrarySearch {
+
+    private static SearchIndex sIndex;
+    private static String sGeneration;
+
+    @WorkerThread
+    public static synchronized SearchIndex get(ContentResolver cr) {
+        String generation = MediaStoreLibrarySource.getGeneration(cr);
+        if (sIndex == null || generation == null || !generation.equals(sGeneration)) {
+            sIndex = SearchIndex.load(new MediaStoreLibrarySource(cr));
+            sGeneration = generation;
+        }
+
+        return sIndex;
+    }
+}
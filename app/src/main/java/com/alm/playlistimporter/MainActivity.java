@@ -1,8 +1,10 @@
 package com.alm.playlistimporter;
 
+import android.content.ClipData;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.Color;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
@@ -12,11 +14,17 @@ import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.Toolbar;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
 public class MainActivity extends AppCompatActivity implements MainView {
 
     public static final int FILE_SELECT_CODE = 1;
@@ -74,8 +82,35 @@ public class MainActivity extends AppCompatActivity implements MainView {
     }
 
     @Override
-    public void appendList(Track item) {
-        mAdapter.addTrack(item);
+    public void showProgress(List<ImportStats.Progress> progress) {
+        StringBuilder text = new StringBuilder();
+        for (ImportStats.Progress p : progress) {
+            if (text.length() > 0)
+                text.append('\n');
+
+            text.append(p.name).append(": ");
+            if (p.error != null) {
+                text.append("failed, ").append(p.error);
+            } else if (p.waiting) {
+                text.append("waiting");
+            } else if (p.finished) {
+                text.append(String.format(Locale.getDefault(), "done, %d songs", p.entries));
+            } else {
+                text.append(String.format(Locale.getDefault(), "%d songs, %.0f/s", p.entries, p.rate));
+                if (p.fraction >= 0)
+                    text.append(String.format(Locale.getDefault(), ", %.0f%%", p.fraction * 100));
+                if (p.eta >= 0)
+                    text.append(String.format(Locale.getDefault(), ", %ds left", p.eta / 1000));
+            }
+        }
+
+        mInfo.setTextColor(Color.BLACK);
+        mInfo.setText(text);
+    }
+
+    @Override
+    public void appendList(List<Track> items) {
+        mAdapter.addTracks(items);
     }
 
     public void clear() {
@@ -83,15 +118,54 @@ public class MainActivity extends AppCompatActivity implements MainView {
         mInfo.setText(null);
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_main, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_share_report) {
+            shareReport();
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void shareReport() {
+        String report = mPresenter.getReport();
+        if (report == null) {
+            Toast.makeText(this, "Import a playlist first", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("text/plain");
+        intent.putExtra(Intent.EXTRA_SUBJECT, "Playlist import report");
+        intent.putExtra(Intent.EXTRA_TEXT, report);
+        startActivity(Intent.createChooser(intent, "Share import report"));
+    }
+
     @Override
     protected void onPause() {
         super.onPause();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mPresenter.detach();
+    }
+
     private void chooseFile() {
-        Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+        // opened documents can keep their permission, so the import can continue after a restart
+        Intent intent = new Intent(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                ? Intent.ACTION_OPEN_DOCUMENT : Intent.ACTION_GET_CONTENT);
         intent.setType("*/*");
         intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
 
         try {
             startActivityForResult(
@@ -108,9 +182,14 @@ public class MainActivity extends AppCompatActivity implements MainView {
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == FILE_SELECT_CODE) {
-            clear();
+            if (!mPresenter.isImporting())
+                clear();
+
             if (resultCode == RESULT_OK) {
-                mPresenter.loadFile(data.getData());
+                List<Uri> files = getFiles(data);
+                for (Uri file : files)
+                    keepPermission(file);
+                mPresenter.loadFiles(files);
             } else {
                 Snackbar.make(findViewById(R.id.container),
                         "No file selected",
@@ -119,19 +198,52 @@ public class MainActivity extends AppCompatActivity implements MainView {
         }
     }
 
+    /**
+     * @return the files picked, several of them if the picker allows it
+     */
+    private List<Uri> getFiles(Intent data) {
+        List<Uri> files = new ArrayList<>();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN && data.getClipData() != null) {
+            ClipData clip = data.getClipData();
+            for (int i = 0; i < clip.getItemCount(); i++)
+                files.add(clip.getItemAt(i).getUri());
+        } else if (data.getData() != null) {
+            files.add(data.getData());
+        }
+
+        return files;
+    }
+
+    private void keepPermission(Uri file) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT)
+            return;
+
+        try {
+            getContentResolver().takePersistableUriPermission(file, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        } catch (SecurityException e) {
+            // not a document, the import can only be resumed while the grant lasts
+        }
+    }
+
     private final BaseAdapter.OnItemClickListener<Track> mOnItemClickListener =
             new BaseAdapter.OnItemClickListener<Track>() {
                 @Override
                 public void onItemClick(View itemView, int pos, Track item) {
                     Intent intent = new Intent(MainActivity.this, SongFinderActivity.class);
                     intent.putExtra(SongFinderActivity.EXTRA_SONG, item.title + " - " + item.artist);
-                    intent.putExtra(SongFinderActivity.EXTRA_PLAYLIST_ID, mPresenter.getPlaylistId());
+                    intent.putExtra(SongFinderActivity.EXTRA_PLAYLIST_ID, mPresenter.getPlaylistId(item));
                     startActivity(intent);
                 }
             };
 
     private static class TrackAdapter extends BaseAdapter<Track, TrackHolder> {
 
+        /**
+         * Tracks not added to the playlist are shown first, the newest on top. They are kept
+         * in reverse so showing one more is an append instead of shifting the whole list.
+         */
+        private final ArrayList<Track> mMissing = new ArrayList<>();
+        private final ArrayList<Track> mAdded = new ArrayList<>();
 
         public TrackAdapter(Context context, OnItemClickListener<Track> itemClickListener) {
             super(context, itemClickListener);
@@ -142,12 +254,40 @@ public class MainActivity extends AppCompatActivity implements MainView {
             return new TrackHolder(mInflater.inflate(R.layout.list_item_song, parent, false));
         }
 
-        public void addTrack(@NonNull Track track) {
-            if (track.isAdded) {
-                add(track);
-            } else {
-                add(0, track);
+        @Override
+        protected Track getItem(int position) {
+            int missing = mMissing.size();
+            return position < missing
+                    ? mMissing.get(missing - 1 - position)
+                    : mAdded.get(position - missing);
+        }
+
+        @Override
+        public int getItemCount() {
+            return mMissing.size() + mAdded.size();
+        }
+
+        public void addTracks(@NonNull List<Track> tracks) {
+            int missing = mMissing.size(), added = mAdded.size();
+            for (Track track : tracks) {
+                if (track.isAdded) {
+                    mAdded.add(track);
+                } else {
+                    mMissing.add(track);
+                }
             }
+
+            if (mMissing.size() > missing)
+                notifyItemRangeInserted(0, mMissing.size() - missing);
+            if (mAdded.size() > added)
+                notifyItemRangeInserted(mMissing.size() + added, mAdded.size() - added);
+        }
+
+        @Override
+        public void clear() {
+            mMissing.clear();
+            mAdded.clear();
+            super.clear();
         }
     }
 
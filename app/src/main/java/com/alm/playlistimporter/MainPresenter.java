@@ -2,13 +2,13 @@ package com.alm.playlistimporter;
 
 import android.net.Uri;
 
-import rx.Subscriber;
+import java.util.List;
 
 /**
  * Created by A. Labay on 25/01/16.
  * As part of the project Playlist Importer.
  */
-public abstract class MainPresenter extends Subscriber<Track> {
+public abstract class MainPresenter {
 
     protected MainView mView;
 
@@ -17,4 +17,9 @@ public abstract class MainPresenter extends Subscriber<Track> {
     }
 
     public abstract void loadFile(Uri uri);
+
+    /**
+     * Imports every file into its own playlist.
+     */
+    public abstract void loadFiles(List<Uri> uris);
 }
@@ -1,20 +1,25 @@
 package com.alm.playlistimporter;
 
-import android.content.ContentResolver;
-import android.content.ContentUris;
-import android.content.ContentValues;
-import android.database.Cursor;
 import android.net.Uri;
-import android.provider.MediaStore;
-import android.text.TextUtils;
+import android.util.Log;
 
-import java.text.DateFormat;
-import java.util.Date;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import rx.Observable;
+import rx.Subscriber;
 import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
-import rx.schedulers.Schedulers;
+import rx.functions.Action1;
+import rx.functions.Func1;
 
 /**
  * Created by A. Labay on 25/01/16.
@@ -22,134 +27,208 @@ import rx.schedulers.Schedulers;
  */
 public class MainPresenterImpl extends MainPresenter {
 
-    private Observable<Track> mObservable = null;
+    private static final String TAG = MainPresenterImpl.class.getSimpleName();
+
+    private static final long PROGRESS_INTERVAL_MS = 500;
+
+    /**
+     * Imported tracks are handed to the view at most this often, or when this many are ready
+     */
+    private static final long DELIVERY_INTERVAL_MS = 250;
+    private static final int DELIVERY_SIZE = 500;
 
-    private ContentResolver mResolver;
+    /**
+     * Imports shown since the last batch was chosen, in the order they were chosen
+     */
+    private final List<ImportJob> mJobs = new ArrayList<>();
+    private final Map<ImportJob, Subscription> mAttached = new HashMap<>();
 
-    private long playlistId = -1;
+    /**
+     * Playlist of every track shown as not added, so it can be added by hand
+     */
+    private final Map<Track, Long> mPlaylists = new IdentityHashMap<>();
+
+    private Subscription mProgress;
+    private boolean mDetached = false;
 
     public MainPresenterImpl(MainView view) {
         super(view);
-        mResolver = view.getContext().getContentResolver();
+
+        for (ImportJob job : ImportService.getJobs())
+            attach(job);
+        ImportService.resumePending(view.getContext(), new Action1<ImportJob>() {
+            @Override
+            public void call(ImportJob job) {
+                if (!mDetached && !mJobs.contains(job))
+                    attach(job);
+            }
+        });
     }
 
     @Override
     public void loadFile(Uri uri) {
-        if (uri == null) {
+        loadFiles(Collections.singletonList(uri));
+    }
+
+    @Override
+    public void loadFiles(List<Uri> uris) {
+        if (uris.isEmpty() || uris.contains(null)) {
             mView.showError("Invalid file");
             return;
         }
 
-        if (mObservable != null) {
-            return;
+        if (!isImporting()) {
+            mJobs.clear();
+            mPlaylists.clear();
         }
 
-        playlistId = createPlaylist(getDefaultName(uri));
-        if (playlistId < 0) {
-            mView.showError("Cannot create playlist, try again.");
-            return;
+        for (Uri uri : uris) {
+            ImportJob job = ImportService.start(mView.getContext(), uri);
+            if (!mJobs.contains(job))
+                attach(job);
         }
-
-        createObservable(uri);
     }
 
-    private Subscription createObservable(final Uri uri) {
-        mObservable = PlaylistReader.execute(mView.getContext().getContentResolver(), uri);
-
-        return mObservable
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(this);
+    public boolean isImporting() {
+        return !mAttached.isEmpty();
     }
 
-    @Override
-    public void onStart() {
-        mView.showMessage("Loading...");
+    /**
+     * Shows the progress and the tracks written from now on, the import itself runs in
+     * {@link ImportService}. Tracks are observed on the main thread in chunks.
+     */
+    private void attach(final ImportJob job) {
+        mJobs.add(job);
+        startProgress();
+
+        Subscription subscription = job.getResults()
+                .flatMapIterable(new Func1<List<Track>, Iterable<Track>>() {
+                    @Override
+                    public Iterable<Track> call(List<Track> tracks) {
+                        return tracks;
+                    }
+                })
+                .buffer(DELIVERY_INTERVAL_MS, TimeUnit.MILLISECONDS, DELIVERY_SIZE)
+                .filter(new Func1<List<Track>, Boolean>() {
+                    @Override
+                    public Boolean call(List<Track> tracks) {
+                        return !tracks.isEmpty();
+                    }
+                })
+                // the import isn't slowed down by the view: if the main thread falls a whole
+                // observeOn buffer behind, the lists are dropped instead of queued without end
+                .onBackpressureDrop(new Action1<List<Track>>() {
+                    @Override
+                    public void call(List<Track> tracks) {
+                        Log.w(TAG, "View behind, not showing " + tracks.size() + " tracks of " + job.getFile());
+                    }
+                })
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Subscriber<List<Track>>() {
+                    @Override
+                    public void onCompleted() {
+                        finished(job);
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        mView.showError(e.getLocalizedMessage() != null ? e.getLocalizedMessage() : e.toString());
+                        finished(job);
+                    }
+
+                    @Override
+                    public void onNext(List<Track> tracks) {
+                        for (Track t : tracks) {
+                            if (!t.isAdded)
+                                mPlaylists.put(t, job.getPlaylistId());
+                        }
+                        mView.appendList(tracks);
+                    }
+                });
+        mAttached.put(job, subscription);
     }
 
-    @Override
-    public void onCompleted() {
-        mView.showMessage("Finish!");
-        mObservable = null;
+    /**
+     * Stops showing the imports, they continue in the background.
+     */
+    public void detach() {
+        mDetached = true;
+        stopProgress();
+        for (Subscription subscription : mAttached.values())
+            subscription.unsubscribe();
+        mAttached.clear();
     }
 
-    @Override
-    public void onError(Throwable e) {
-        mView.showMessage(e.getLocalizedMessage());
-        deletePlaylist();
-        mObservable = null;
-    }
+    private void finished(ImportJob job) {
+        mAttached.remove(job);
+        Log.i(TAG, "Import finished: " + getReport(job));
 
-    @Override
-    public void onNext(Track s) {
-        if (s.id != -1) {
-            s.isAdded = addToPlaylist(s.id);
+        if (mAttached.isEmpty()) {
+            stopProgress();
+            showProgress();
         }
-
-        mView.appendList(s);
     }
 
-    private String getDefaultName(Uri uri) {
-        String s = uri.getLastPathSegment();
-        if (!TextUtils.isEmpty(s)) {
-            return s.substring(0, s.lastIndexOf("."));
-        }
+    private void startProgress() {
+        if (mProgress != null)
+            return;
 
-        return "Playlist_" + DateFormat.getDateInstance(DateFormat.SHORT)
-                .format(new Date());
+        mView.showMessage("Loading...");
+        mProgress = Observable.interval(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS,
+                AndroidSchedulers.mainThread())
+                .subscribe(new Action1<Long>() {
+                    @Override
+                    public void call(Long tick) {
+                        showProgress();
+                    }
+                });
     }
 
-    private long createPlaylist(String name) {
-        Cursor pCursor = null;
-        try {
-            pCursor = mResolver.query(MediaStore.Audio.Playlists.EXTERNAL_CONTENT_URI,
-                    new String[]{MediaStore.Audio.Playlists._ID},
-                    MediaStore.Audio.Playlists.NAME + "=?", new String[]{name},
-                    null);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        long pId = -1;
-        if (pCursor != null && pCursor.moveToFirst()) {
-            pId = pCursor.getLong(0);
-        }
-
-        if (pCursor != null)
-            pCursor.close();
-
-        if (pId != -1)
-            return pId;
-
-        ContentValues values = new ContentValues(1);
-        values.put(MediaStore.Audio.Playlists.NAME, name);
-
-        Uri uri = mResolver.insert(MediaStore.Audio.Playlists.EXTERNAL_CONTENT_URI, values);
-        if (uri != null) {
-            return ContentUris.parseId(uri);
+    private void stopProgress() {
+        if (mProgress != null) {
+            mProgress.unsubscribe();
+            mProgress = null;
         }
+    }
 
-        return -1;
+    private void showProgress() {
+        List<ImportStats.Progress> progress = new ArrayList<>(mJobs.size());
+        for (ImportJob job : mJobs)
+            progress.add(job.getStats().getProgress());
+        mView.showProgress(progress);
     }
 
-    public boolean addToPlaylist(long id) {
-        ContentValues v = new ContentValues(3);
-        v.put(MediaStore.Audio.Playlists.Members.PLAYLIST_ID, playlistId);
-        v.put(MediaStore.Audio.Playlists.Members.AUDIO_ID, id);
+    /**
+     * @return the summaries of the imports shown as JSON, or null if there hasn't been any
+     */
+    public String getReport() {
+        if (mJobs.isEmpty())
+            return null;
 
-        return mResolver.insert(
-                MediaStore.Audio.Playlists.Members.getContentUri("external", playlistId),
-                v) != null;
+        try {
+            JSONArray report = new JSONArray();
+            for (ImportJob job : mJobs)
+                report.put(job.getStats().toJson());
+            return report.toString(2);
+        } catch (JSONException e) {
+            Log.e(TAG, "Cannot write the import report", e);
+            return null;
+        }
     }
 
-    public long getPlaylistId() {
-        return playlistId;
+    private String getReport(ImportJob job) {
+        try {
+            return job.getStats().toJson().toString();
+        } catch (JSONException e) {
+            return job.getStats().getName();
+        }
     }
 
-    private void deletePlaylist() {
-        mResolver.delete(MediaStore.Audio.Playlists.EXTERNAL_CONTENT_URI,
-                MediaStore.Audio.Playlists._ID + "=?",
-                new String[]{""+playlistId});
-        playlistId = 0;
+    /**
+     * @return the playlist the track was imported into, or -1 if it's unknown
+     */
+    public long getPlaylistId(Track track) {
+        Long id = mPlaylists.get(track);
+        return id != null ? id : -1;
     }
 }
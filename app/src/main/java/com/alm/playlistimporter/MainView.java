@@ -2,6 +2,8 @@ package com.alm.playlistimporter;
 
 import android.content.Context;
 
+import java.util.List;
+
 /**
  * Created by A. Labay on 25/01/16.
  * As part of the project Playlist Importer.
@@ -14,5 +16,13 @@ public interface MainView {
 
     void showMessage(String text);
 
-    void appendList(Track item);
+    /**
+     * Called periodically while files are being imported, with one item per file.
+     */
+    void showProgress(List<ImportStats.Progress> progress);
+
+    /**
+     * Adds a chunk of imported tracks, they are delivered together to avoid a layout per track.
+     */
+    void appendList(List<Track> items);
 }
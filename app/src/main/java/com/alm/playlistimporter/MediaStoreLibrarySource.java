@@ -0,0 +1,109 @@
+package com.alm.playlistimporter;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.provider.MediaStore;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * The external audio library of the device, read with a single query.
+ * Must not be used from the main thread.
+ */
+public class MediaStoreLibrarySource implements LibrarySource {
+
+    public static final String[] PROJECTION = new String[] {
+            MediaStore.Audio.Media._ID,
+            MediaStore.Audio.Media.TITLE,
+            MediaStore.Audio.Media.ARTIST,
+            MediaStore.Audio.Media.DATA,
+            MediaStore.Audio.Media.TITLE_KEY,
+            MediaStore.Audio.Media.ARTIST_KEY,
+            MediaStore.Audio.Media.DURATION,
+            MediaStore.Audio.Media.ALBUM};
+
+    public static final LibraryIndex.KeyGenerator KEYS = new LibraryIndex.KeyGenerator() {
+        @Override
+        public String keyFor(String name) {
+            return MediaStore.Audio.keyFor(name);
+        }
+    };
+
+    private ContentResolver mResolver;
+    private Cursor mCursor;
+
+    public MediaStoreLibrarySource(ContentResolver cr) {
+        mResolver = cr;
+    }
+
+    @Override
+    public int size() {
+        Cursor c = query();
+        return c == null ? -1 : c.getCount();
+    }
+
+    @Override
+    public LibraryIndex.KeyGenerator getKeyGenerator() {
+        return KEYS;
+    }
+
+    @Override
+    public void read(Visitor visitor) {
+        Cursor c = query();
+        if (c == null)
+            return;
+
+        c.moveToPosition(-1);
+        while (c.moveToNext()) {
+            Track t = new Track(c.getInt(0), c.getString(1), c.getString(2), c.getString(3), true);
+            if (!c.isNull(6))
+                t.duration = (int) ((c.getLong(6) + 500) / 1000); // milliseconds
+            t.album = c.getString(7);
+            visitor.visit(t, c.getString(4), c.getString(5));
+        }
+        c.close();
+        mCursor = null;
+    }
+
+    /**
+     * The same cursor is used to know the size and to read the tracks.
+     */
+    private Cursor query() {
+        if (mCursor == null) {
+            mCursor = mResolver.query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                    PROJECTION,
+                    null,
+                    null,
+                    null);
+        }
+
+        return mCursor;
+    }
+
+    /**
+     * MediaStore generations aren't available on the supported versions, so the library is
+     * identified by its size, highest id and newest modification date instead. Adding, removing
+     * or editing a track changes at least one of them.
+     */
+    public static String getGeneration(ContentResolver cr) {
+        Cursor c = cr.query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                new String[]{
+                        "COUNT(*)",
+                        "MAX(" + MediaStore.Audio.Media._ID + ")",
+                        "MAX(" + MediaStore.Audio.Media.DATE_MODIFIED + ")"},
+                null,
+                null,
+                null);
+
+        if (c == null)
+            return null;
+
+        String generation = null;
+        if (c.moveToFirst())
+            generation = c.getLong(0) + ":" + c.getLong(1) + ":" + c.getLong(2);
+        c.close();
+
+        return generation;
+    }
+}
@@ -1,42 +1,71 @@
 package com.alm.playlistimporter;
 
 import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
 import android.net.Uri;
-import android.provider.MediaStore;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
-import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import rx.Observable;
+import rx.Scheduler;
 import rx.Subscriber;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
 
 /**
  * Created by A. Labay on 15/01/16.
  * As part of the project Playlist Importer.
  */
-public class PlaylistReader implements Observable.OnSubscribe<Track> {
+public class PlaylistReader extends PacedOnSubscribe<Track> {
 
     public static final String TAG = PlaylistReader.class.getSimpleName();
 
     public static final int TYPE_ITUNES = 0, TYPE_M3U = 1;
 
+    private static final int RESOLVE_BATCH = 64;
+    private static final int RESOLVE_CONCURRENCY = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Resolving blocks on the cache database and the provider, so it gets threads of its own
+     * instead of the computation pool. They are shared by every import and stop when idle.
+     */
+    private static final Scheduler RESOLVER = Schedulers.from(newResolverPool());
+
     private Uri mFile;
     private ContentResolver mResolver;
+    private final ResolutionCache mCache;
     private int mType;
+    private final ImportStats mStats;
 
     /**
      * Constructs the iTunes playlist parser
      * @param file where the playlist is.
-     *             Must be a *.xml exported from iTunes or *.m3u file.
+     *             Must be a *.xml exported from iTunes or *.m3u or *.m3u8 file.
+     * @param stats where the reading and the lookups are measured
      */
-    public PlaylistReader(ContentResolver cr, @NonNull Uri file) {
-        mResolver = cr;
+    public PlaylistReader(Context context, @NonNull Uri file, @NonNull ImportStats stats) {
+        mResolver = context.getContentResolver();
+        mStats = stats;
+        mCache = ResolutionCache.getInstance(context);
         mFile = file;
         mType = getType(file.getLastPathSegment());
 
@@ -46,14 +75,69 @@ public class PlaylistReader implements Observable.OnSubscribe<Track> {
         }
     }
 
-    public static Observable<Track> execute(ContentResolver cr, @NonNull Uri file) {
-        return Observable.create(new PlaylistReader(cr, file));
+    /**
+     * Parses the file on the subscribing thread and resolves the parsed entries in chunks of
+     * {@link #RESOLVE_BATCH} on the resolver threads, at most {@link #RESOLVE_CONCURRENCY}
+     * chunks at a time. Tracks keep the order the parser emits them in.
+     *
+     * Parsing follows the demand of the subscriber, see {@link PacedOnSubscribe} for the
+     * threads it can be subscribed on.
+     */
+    public static Observable<Track> execute(Context context, @NonNull Uri file,
+                                            @NonNull ImportStats stats) {
+        return execute(context, file, stats, 0);
+    }
+
+    /**
+     * Same as {@link #execute(Context, Uri, ImportStats)} but skipping the entries before
+     * the position without resolving them, for imports continuing from a checkpoint.
+     */
+    public static Observable<Track> execute(Context context, @NonNull Uri file,
+                                            @NonNull ImportStats stats, final int from) {
+        final PlaylistReader reader = new PlaylistReader(context, file, stats);
+        return resolveInOrder(Observable.create(reader), new Func1<List<Track>, List<Track>>() {
+            @Override
+            public List<Track> call(List<Track> entries) {
+                return reader.resolve(entries);
+            }
+        }, from);
+    }
+
+    /**
+     * Resolves the entries from the position on in ordered parallel chunks.
+     */
+    static Observable<Track> resolveInOrder(Observable<Track> entries, Func1<List<Track>, List<Track>> resolve,
+                                            final int from) {
+        Observable<List<Track>> chunks = entries
+                .filter(new Func1<Track, Boolean>() {
+                    @Override
+                    public Boolean call(Track entry) {
+                        return entry.position >= from;
+                    }
+                })
+                .buffer(RESOLVE_BATCH);
+
+        return OrderedParallel.map(chunks, resolve, RESOLVE_CONCURRENCY, RESOLVER)
+                .concatMap(new Func1<List<Track>, Observable<Track>>() {
+                    @Override
+                    public Observable<Track> call(List<Track> tracks) {
+                        return Observable.from(tracks); // flatMapIterable requests without limit
+                    }
+                });
+    }
+
+    private static ExecutorService newResolverPool() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(RESOLVE_CONCURRENCY, RESOLVE_CONCURRENCY,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
     }
 
     private int getType(String name) {
+        name = name.toLowerCase(Locale.US);
         if (name.endsWith("xml")) {
             return TYPE_ITUNES;
-        } else if (name.endsWith("m3u")) {
+        } else if (name.endsWith("m3u") || name.endsWith("m3u8")) {
             return TYPE_M3U;
         }
 
@@ -62,80 +146,113 @@ public class PlaylistReader implements Observable.OnSubscribe<Track> {
 
     private PlaylistParser getParser() {
         if (mType == TYPE_ITUNES) {
-            return null; //new XMLPlaylistParser(mIdRetriever);
+            return new XMLPlaylistParser(new Callable<InputStream>() {
+                @Override
+                public InputStream call() throws Exception {
+                    return mStats.count(mResolver.openInputStream(mFile));
+                }
+            });
         } else if (mType == TYPE_M3U) {
-            return new M3UPlaylistParser(mIdRetriever);
+            return new M3UPlaylistParser(mFile.getLastPathSegment());
         }
 
         return null;
     }
 
-    private final IdRetriever mIdRetriever = new IdRetriever() {
-        String[] PROJECTION = new String[] {
-                MediaStore.Audio.Media._ID,
-                MediaStore.Audio.Media.TITLE,
-                MediaStore.Audio.Media.ARTIST,
-                MediaStore.Audio.Media.DATA};
+    private LibraryIndex mLibrary;
 
-        @Override
-        public Track getMediaId(String title_key, String artist_key, String uri) {
-            Track track = try_uri(uri);
-            if (track != null)
-                return track;
-
-            return try_title(title_key, artist_key);
+    /**
+     * The library is only loaded once an entry misses the cache, and shared with the other imports.
+     */
+    private synchronized LibraryIndex getLibrary() {
+        if (mLibrary == null) {
+            mLibrary = LibraryMatching.get(mResolver);
+            Log.i(TAG, "Library loaded: " + mLibrary.size() + " tracks");
         }
 
-        private Track try_uri(String uri) {
-            Cursor c = mResolver.query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
-                    PROJECTION,
-                    MediaStore.Audio.Media.DATA + " LIKE ",
-                    new String[]{"%" + Uri.parse(uri).getLastPathSegment()},
-                    null);
+        return mLibrary;
+    }
 
-            if (c == null)
-                return null;
+    /**
+     * Where the folders of the playlist are in the device, learned from the first matches
+     */
+    private final RootMapping mRoots = new RootMapping();
 
-            if (!c.moveToFirst()) {
-                c.close();
-                return null;
-            }
+    private final IdRetriever mIdRetriever = new IdRetriever() {
 
-            if (c.getCount() == 1) {
-                Track t = new Track(c.getInt(0), c.getString(1), c.getString(2), c.getString(3), true);
-                c.close();
-                return t;
+        @Override
+        public Track getMediaId(Track entry) {
+            LibraryIndex library = getLibrary();
+            long start = System.nanoTime();
+            try {
+                Track track = mRoots.find(library, entry.uri);
+                if (track != null)
+                    return track;
+
+                track = library.find(entry);
+                if (track != null)
+                    mRoots.learn(entry.uri, track.uri);
+                return track;
+            } finally {
+                mStats.lookup.recordSince(start);
             }
-            return null;
         }
+    };
 
-        private Track try_title(String title, String artist) {
-            Cursor c = mResolver.query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
-                    PROJECTION,
-                    MediaStore.Audio.Media.TITLE_KEY + " =? AND " + MediaStore.Audio.Media.ARTIST_KEY + "=?",
-                    new String[]{MediaStore.Audio.keyFor(title), MediaStore.Audio.keyFor(artist)},
-                    null);
+    /**
+     * Replaces every parsed entry of the chunk with its library track, if any.
+     * Entries that can't be matched are kept as they are.
+     */
+    private List<Track> resolve(List<Track> entries) {
+        List<Track> cached = null;
+        try {
+            cached = mCache.getAll(mResolver, entries);
+        } catch (Exception e) {
+            Log.e(TAG, "Cannot use the resolution cache", e);
+        }
 
-            if (c == null)
-                return null;
+        List<Track> missed = new ArrayList<>();
+        List<Track> resolved = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            Track entry = entries.get(i);
+            try {
+                Track track = cached != null ? cached.get(i) : null;
+                if (track != null) {
+                    mStats.resolvedFromCache();
+                } else {
+                    track = mIdRetriever.getMediaId(entry);
+                    if (track != null) {
+                        missed.add(entry);
+                        resolved.add(track);
+                        mStats.resolvedFromLibrary();
+                    }
+                }
 
-            if (!c.moveToFirst()) {
-                c.close();
-                return null;
+                if (track != null) {
+                    track.position = entry.position;
+                    entries.set(i, track);
+                } else {
+                    mStats.unmatched();
+                }
+            } catch (Exception ignored) {
+                // leave this one unmatched but continue with the rest
+                mStats.unmatched();
             }
+        }
 
-            if (c.getCount() == 1) {
-                Track t = new Track(c.getInt(0), c.getString(1), c.getString(2), c.getString(3), true);
-                c.close();
-                return t;
+        if (!missed.isEmpty()) {
+            try {
+                mCache.putAll(mResolver, missed, resolved);
+            } catch (Exception e) {
+                Log.e(TAG, "Cannot update the resolution cache", e);
             }
-
-            return null;
         }
-    };
+
+        return entries;
+    }
 
     @Override
-    public void call(Subscriber<? super Track> subscriber) {
+    protected void emit(Subscriber<Track> subscriber) {
         Log.i(TAG, "Started reader");
         PlaylistParser parser = getParser();
 
@@ -145,6 +262,11 @@ public class PlaylistReader implements Observable.OnSubscribe<Track> {
             return;
         }
 
+        if (parseMapped(parser, subscriber)) {
+            subscriber.onCompleted();
+            return;
+        }
+
         InputStream stream;
         try {
             stream = mResolver.openInputStream(mFile);
@@ -160,23 +282,124 @@ public class PlaylistReader implements Observable.OnSubscribe<Track> {
             return;
         }
 
+        // the iTunes parser reads the file twice, first the playlist and then the tracks
+        long size = getSize();
+        mStats.setExpectedBytes(size < 0 ? -1 : mType == TYPE_ITUNES ? 2 * size : size);
+
         Log.i(TAG, "Start parsing...");
+        long start = System.nanoTime();
         try {
-            parser.parse(stream, subscriber);
+            parser.parse(mStats.count(stream), subscriber);
         } catch (IOException e) {
             Log.i(TAG, "Error parsing", e);
             subscriber.onError(e);
+            return; // nothing may follow the error
+        } finally {
+            mStats.parse.recordSince(start);
+            try {
+                stream.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
         Log.i(TAG, "End parsing");
 
+        subscriber.onCompleted();
+    }
 
+    /**
+     * Local files and seekable documents are mapped in memory and parsed from there, without
+     * copying them through streams. Pipes and parsers that only read streams are left for
+     * the stream path.
+     * @return false if the file hasn't been parsed, nothing has been emitted then
+     */
+    private boolean parseMapped(PlaylistParser parser, final Subscriber<? super Track> subscriber) {
+        ParcelFileDescriptor fd;
         try {
-            stream.close();
+            fd = mResolver.openFileDescriptor(mFile, "r");
+        } catch (FileNotFoundException | SecurityException e) {
+            return false;
+        }
+
+        if (fd == null)
+            return false;
+
+        FileInputStream in = new FileInputStream(fd.getFileDescriptor());
+        try {
+            final long size = fd.getStatSize();
+            if (size <= 0 || size > Integer.MAX_VALUE)
+                return false; // not a regular file or too big to map at once
+
+            final MappedByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mStats.setExpectedBytes(size);
+
+            Log.i(TAG, "Start parsing mapped file...");
+            long start = System.nanoTime();
+            boolean parsed = parser.parse(buffer, new Subscriber<Track>(subscriber) {
+                @Override
+                public void onCompleted() {
+                    subscriber.onCompleted();
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    subscriber.onError(e);
+                }
+
+                @Override
+                public void onNext(Track track) {
+                    mStats.setBytesRead(buffer.position());
+                    subscriber.onNext(track);
+                }
+            });
+
+            if (parsed) {
+                mStats.setBytesRead(size);
+                mStats.parse.recordSince(start);
+                Log.i(TAG, "End parsing");
+            }
+            return parsed;
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.i(TAG, "Cannot map the file", e);
+            return false;
+        } finally {
+            try {
+                in.close();
+                fd.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
+    }
 
-        subscriber.onCompleted();
+    /**
+     * @return the size of the file in bytes, or -1 if the provider doesn't tell
+     */
+    private long getSize() {
+        Cursor c = null;
+        try {
+            c = mResolver.query(mFile, new String[]{OpenableColumns.SIZE}, null, null, null);
+            if (c != null && c.moveToFirst() && !c.isNull(0))
+                return c.getLong(0);
+        } catch (Exception ignored) {
+            // not every provider has the openable columns
+        } finally {
+            if (c != null)
+                c.close();
+        }
+
+        try {
+            AssetFileDescriptor fd = mResolver.openAssetFileDescriptor(mFile, "r");
+            if (fd != null) {
+                long length = fd.getLength();
+                fd.close();
+                return length;
+            }
+        } catch (IOException ignored) {
+            // unknown size, the progress will be shown without percent
+        }
+
+        return -1;
     }
 
     /*private String getDefaultName(String string) {
@@ -226,260 +449,11 @@ public class PlaylistReader implements Observable.OnSubscribe<Track> {
         }
 
         return -1;
-    }
-
-    private ContentValues[] getContentValues(long pId, ArrayList<Track> ids) {
-        if (ids.isEmpty())
-            return null;
-
-        ContentValues[] values = new ContentValues[ids.size()];
-        int excluded = 0;
-        for (int i = 0; i < ids.size(); i++) {
-            if (ids.get(i).id == 1) {
-                ++excluded;
-                continue;
-            }
-            ContentValues v = new ContentValues(3);
-            v.put(MediaStore.Audio.Playlists.Members.PLAYLIST_ID, pId);
-            v.put(MediaStore.Audio.Playlists.Members.AUDIO_ID, ids.get(i).id);
-            v.put(MediaStore.Audio.Playlists.Members.PLAY_ORDER, i);
-            values[i-excluded] = v;
-        }
-
-        return Arrays.copyOf(values, ids.size()-excluded);
-    }*/
-
-    /*private static class XMLPlaylistParser extends PlaylistParser {
-
-        public XMLPlaylistParser(IdRetriever idRetriever) {
-            super(idRetriever);
-        }
-
-        private String name;
-
-        @Override
-        public String getName() {
-            return name;
-        }
-
-        @Override
-        public ArrayList<Track> parse(@NonNull InputStream file, Subscriber<? super Track> subscriber) {
-            ArrayList<Long> strings = new ArrayList<>();
-            try {
-                XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-                XmlPullParser parser = factory.newPullParser();
-                parser.setInput(file, "UTF-8");
-
-                parser.nextTag();
-                parser.require(XmlPullParser.START_TAG, null, "plist");
-                skipTo(parser, "dict"); // skip to the first key
-                skipTo(parser, "dict"); // skip to the tracks dict
-                while (parser.next() != XmlPullParser.END_DOCUMENT) {
-                    int type = parser.getEventType();
-                    if (type == XmlPullParser.END_TAG) {
-                        if (parser.getName().equals("dict"))
-                            return null;
-                    }
-
-                    if (type != XmlPullParser.START_TAG)
-                        continue;
-
-                    String tag = parser.getName();
-                    switch (tag) {
-                        case "key":
-                            String[] keys = parseTrack(parser);
-                            if (keys != null) {
-                                long id = mIdRetriever.getMediaId(keys[0], keys[1]);
-                                if (id == -1) {
-                                    subscriber.onNext(new Track(-1, keys[0], keys[1], uri, false));
-                                } else {
-                                    strings.add(id);
-                                }
-                            }
-                            break;
-                    }
-                }
-                skipTo(parser, "array");
-                skipTo(parser, "key");
-                while (parser.next() != XmlPullParser.END_DOCUMENT) {
-                    int type = parser.getEventType();
-                    if (type == XmlPullParser.START_TAG) {
-                        if (parser.getName().equals("key")) {
-                            String key = parser.nextText();
-                            if (key.equalsIgnoreCase("name")) {
-                                skipTo(parser, "string");
-                                name = parser.nextText();
-                                break;
-                            }
-                        }
-                    } else if (type == XmlPullParser.TEXT) {
-                        if (parser.getText().equalsIgnoreCase("name")) {
-                            skipTo(parser, "string");
-                            name = parser.nextText();
-                            break;
-                        }
-                    }
-                }
-            } catch (XmlPullParserException | IOException e) {
-                e.printStackTrace();
-            }
-
-            return strings;
-        }
-
-        private String[] parseTrack(XmlPullParser parser) {
-            String name = null, artist = null;
-            try {
-                while (parser.next() != XmlPullParser.END_DOCUMENT) {
-                    if (parser.getEventType() == XmlPullParser.END_TAG) {
-                        if (parser.getName().equals("dict"))
-                            return null;
-                    }
-
-                    if (parser.getEventType() != XmlPullParser.START_TAG)
-                        continue;
-
-                    String tag = parser.getName();
-                    if (tag.equals("key")) {
-                        String key = parser.nextText();
-                        if (key.equalsIgnoreCase("name")) {
-                            skipTo(parser, "string");
-                            name = parser.nextText();
-                        } else if (key.equalsIgnoreCase("artist")) {
-                            skipTo(parser, "string");
-                            artist = parser.nextText();
-                        }
-                    }
-
-                    if (name != null && artist != null)
-                        break;
-                }
-
-                skipTo(parser, "dict");
-                return new String[] {MediaStore.Audio.keyFor(name), MediaStore.Audio.keyFor(artist)};
-            } catch (XmlPullParserException | IOException e) {
-                e.printStackTrace();
-            }
-
-            return null; // something failed, don't add it to the playlist
-        }
-
-        private void skipTo(XmlPullParser parser, String tag) throws XmlPullParserException, IOException {
-            while (parser.next() != XmlPullParser.END_DOCUMENT) {
-                if (parser.getEventType() == XmlPullParser.START_TAG
-                        || parser.getEventType() == XmlPullParser.END_TAG)
-                    if (parser.getName().equals(tag)) {
-                        return;
-                    }
-            }
-        }
     }*/
 
-    private static class M3UPlaylistParser extends PlaylistParser {
-
-        //private final Pattern mPattern = Pattern.compile("#EXTINF:\\d+,(.+)-(.+?)$");
-
-
-        public M3UPlaylistParser(IdRetriever idRetriever) {
-            super(idRetriever);
-        }
-
-        @Override
-        public String getName() {
-            return null;
-        }
-
-        @Override
-        public void parse(@NonNull InputStream file, Subscriber<? super Track> subscriber) throws IOException {
-            BufferedReader br = new BufferedReader(new InputStreamReader(file));
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (line.startsWith("#EXTM3U"))
-                    continue; // starting the file
-
-                if (!line.startsWith("#EXTINF"))
-                    continue;
-
-                try {
-                    String title_artist = line.substring(line.indexOf(",") + 1, line.length());
-                    String[] keys = getTrackKey(title_artist);
-                    String uri = br.readLine();
-
-                    Track track = mIdRetriever.getMediaId(keys[0], keys[1], uri);
-                    if (track == null) {
-                        track = new Track(-1, keys[0], keys[1], uri, false);
-                    }
-                    subscriber.onNext(track);
-                } catch (Exception ignored) {
-                    // something failed in this item so skip it but continue parsing the playlist
-                }
-            }
-        }
-
-        private String[] getTrackKey(String line) {
-            /*
-                Rewrite!!!!
-                Choose first index of '-' no matter how many of them
-                if this fails @IdRetriever will try uri.
-             */
-            line = line.trim();
-            int counter = 0;
-            for (int i = 0; i < line.length(); i++) {
-                if (line.charAt(i) == '-') {
-                    counter++;
-                }
-            }
-
-            if (counter == 1) {
-                String[] names = line.split("-");
-                return new String[]{names[0].trim(), names[1].trim()};
-            } else if (counter == 2) {
-                int pos = line.lastIndexOf("-");
-                return new String[]{
-                        line.substring(0, pos).trim(),
-                        line.substring(pos + 1, line.length()).trim()
-                };
-            } else { // last solution
-                String[] parts = line.split("-");
-                String name = "", artist = "";
-                for (int i = 0; i < parts.length; i++) {
-                    if (i <= (parts.length/2))
-                        name += parts[i];
-                    else
-                        artist += parts[i];
-                }
-
-                return new String[]{name, artist};
-            }
-        }
-    }
-
-    private static abstract class PlaylistParser {
-
-        protected IdRetriever mIdRetriever;
-
-        public PlaylistParser(IdRetriever idRetriever) {
-            mIdRetriever = idRetriever;
-        }
-
-        /**
-         * Parses the playlist
-         * @param file the playlist
-         */
-        public abstract void parse(@NonNull InputStream file, Subscriber<? super Track> subscriber) throws IOException;
-
-
-        /**
-         * @return the playlist name
-         *
-         * Call this after the {@link #parse(InputStream, Subscriber)}}} has finished
-         */
-        public abstract String getName();
-    }
-
     private interface IdRetriever {
 
-        Track getMediaId(String title_key, String artist_key, String uri);
+        Track getMediaId(Track entry);
 
     }
 }
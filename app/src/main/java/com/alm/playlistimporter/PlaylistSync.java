@@ -0,0 +1,305 @@
+package com.alm.playlistimporter;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.MediaStore;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import rx.functions.Func1;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Writes chunks of parsed tracks into a playlist that already has members, like one imported
+ * before from an older version of the same file. The members are read once and every track
+ * takes one with its audio id, only the tracks without a member are inserted, after the
+ * others. Once the whole file is read {@link #finish()} deletes the members left and moves
+ * the ones out of place, keeping the longest run already in order, see {@link PlaylistMoves}.
+ * Adding or removing a few entries costs a few writes, however big the playlist is.
+ */
+public class PlaylistSync implements Func1<List<Track>, List<Track>> {
+
+    public static final String TAG = PlaylistSync.class.getSimpleName();
+
+    /**
+     * Every move is a provider call of its own, above this many the members are renumbered
+     * in batches instead
+     */
+    static final int MAX_MOVES = PlaylistWriter.BATCH_SIZE;
+
+    private static class Member {
+
+        final long id;
+        final int playOrder;
+
+        Member(long id, int playOrder) {
+            this.id = id;
+            this.playOrder = playOrder;
+        }
+    }
+
+    private ContentResolver mResolver;
+    private long mPlaylistId;
+    private Uri mMembersUri;
+    private ImportStats mStats;
+
+    /**
+     * Members not taken by any track yet, by audio id, in play order
+     */
+    private final Map<Long, List<Member>> mMembers = new HashMap<>();
+    private int mSize = 0;
+
+    /**
+     * Play order of the next member inserted, the first one is after every member read
+     */
+    private int mNextOrder = 0, mFirstInserted;
+
+    /**
+     * Play orders of the members taken and inserted, by the position of their track, which
+     * may come in any order
+     */
+    private int[] mOrders = new int[PlaylistWriter.BATCH_SIZE];
+    private final BitSet mRecorded = new BitSet();
+    private boolean mInsertFailed = false;
+
+    @WorkerThread
+    public PlaylistSync(ContentResolver cr, long playlistId, ImportStats stats) {
+        mResolver = cr;
+        mStats = stats;
+        mPlaylistId = playlistId;
+        mMembersUri = MediaStore.Audio.Playlists.Members.getContentUri("external", playlistId);
+        readMembers();
+        mFirstInserted = mNextOrder;
+    }
+
+    private void readMembers() {
+        Cursor c = mResolver.query(mMembersUri,
+                new String[]{
+                        MediaStore.Audio.Playlists.Members._ID,
+                        MediaStore.Audio.Playlists.Members.AUDIO_ID,
+                        MediaStore.Audio.Playlists.Members.PLAY_ORDER},
+                null,
+                null,
+                MediaStore.Audio.Playlists.Members.PLAY_ORDER);
+        if (c == null)
+            return;
+
+        while (c.moveToNext()) {
+            List<Member> members = mMembers.get(c.getLong(1));
+            if (members == null) {
+                members = new ArrayList<>(1);
+                mMembers.put(c.getLong(1), members);
+            }
+            members.add(new Member(c.getLong(0), c.getInt(2)));
+            mNextOrder = Math.max(mNextOrder, c.getInt(2) + 1);
+            mSize++;
+        }
+        c.close();
+    }
+
+    /**
+     * @return true if the playlist had no members, a plain {@link PlaylistWriter} does then
+     */
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    @Override
+    public List<Track> call(List<Track> tracks) {
+        List<ContentValues> inserts = new ArrayList<>();
+        List<Track> inserted = new ArrayList<>();
+
+        for (Track t : tracks) {
+            if (t.id == -1)
+                continue;
+
+            Member member = take(t.id);
+            if (member == null) {
+                ContentValues v = new ContentValues(3);
+                v.put(MediaStore.Audio.Playlists.Members.PLAYLIST_ID, mPlaylistId);
+                v.put(MediaStore.Audio.Playlists.Members.AUDIO_ID, t.id);
+                v.put(MediaStore.Audio.Playlists.Members.PLAY_ORDER, mNextOrder);
+                inserts.add(v);
+                inserted.add(t);
+                record(t.position, mNextOrder++);
+            } else {
+                t.isAdded = true;
+                record(t.position, member.playOrder);
+            }
+        }
+
+        if (!inserts.isEmpty()) {
+            long start = System.nanoTime();
+            ContentValues[] values = inserts.toArray(new ContentValues[inserts.size()]);
+            boolean added = mResolver.bulkInsert(mMembersUri, values) == values.length;
+            mStats.write.recordSince(start);
+            mStats.written(values.length, added);
+            for (Track t : inserted)
+                t.isAdded = added;
+            mInsertFailed |= !added;
+        }
+
+        return tracks;
+    }
+
+    private void record(int position, int playOrder) {
+        if (position >= mOrders.length)
+            mOrders = Arrays.copyOf(mOrders, Math.max(position + 1, mOrders.length * 2));
+        mOrders[position] = playOrder;
+        mRecorded.set(position);
+    }
+
+    /**
+     * @return the play orders of the members, in the order of the file
+     */
+    private int[] inFileOrder() {
+        int[] orders = new int[mRecorded.cardinality()];
+        int i = 0;
+        for (int position = mRecorded.nextSetBit(0); position >= 0; position = mRecorded.nextSetBit(position + 1))
+            orders[i++] = mOrders[position];
+        return orders;
+    }
+
+    /**
+     * Takes the first member of the track left, so repeated tracks keep their relative order.
+     * @return null if the track wasn't in the playlist, or fewer times than in the file
+     */
+    private Member take(long audioId) {
+        List<Member> members = mMembers.get(audioId);
+        if (members == null)
+            return null;
+
+        Member member = members.remove(0);
+        if (members.isEmpty())
+            mMembers.remove(audioId);
+        return member;
+    }
+
+    /**
+     * Deletes the members no track of the file has taken and moves the ones out of place,
+     * call it once every chunk is written.
+     */
+    @WorkerThread
+    public void finish() {
+        ArrayList<ContentProviderOperation> deletes = new ArrayList<>();
+        for (List<Member> members : mMembers.values()) {
+            for (Member member : members) {
+                deletes.add(ContentProviderOperation.newDelete(mMembersUri)
+                        .withSelection(MediaStore.Audio.Playlists.Members._ID + "=?",
+                                new String[]{"" + member.id})
+                        .build());
+
+                if (deletes.size() == PlaylistWriter.BATCH_SIZE) {
+                    mStats.removed(deletes.size(), apply(deletes));
+                    deletes.clear();
+                }
+            }
+        }
+
+        if (!deletes.isEmpty())
+            mStats.removed(deletes.size(), apply(deletes));
+        mMembers.clear();
+
+        long start = System.nanoTime();
+        int[] orders = inFileOrder();
+        int count = orders.length;
+        boolean[] kept = PlaylistMoves.kept(orders, count);
+        int moves = PlaylistMoves.count(kept);
+        // the indexes of the moves are wrong if some inserted member is missing
+        if (moves > MAX_MOVES || mInsertFailed) {
+            mStats.kept(renumber(orders));
+        } else {
+            if (moves > 0) {
+                int moved = PlaylistMoves.apply(orders, count, kept, new PlaylistMoves.Mover() {
+                    @Override
+                    public boolean move(int from, int to) {
+                        return MediaStore.Audio.Playlists.Members.moveItem(mResolver, mPlaylistId, from, to);
+                    }
+                });
+                mStats.moved(moved >= 0 ? moved : moves, moved >= 0);
+            }
+
+            int keptMembers = 0;
+            for (int i = 0; i < count; i++) {
+                if (kept[i] && orders[i] < mFirstInserted)
+                    keptMembers++;
+            }
+            mStats.kept(keptMembers);
+        }
+        if (moves > 0)
+            mStats.write.recordSince(start);
+    }
+
+    /**
+     * Sets the play order of every member to its position in the file.
+     * @return the number of members that had it already
+     */
+    private int renumber(int[] orders) {
+        Map<Integer, Integer> positions = new HashMap<>(orders.length * 2);
+        for (int i = 0; i < orders.length; i++)
+            positions.put(orders[i], i);
+
+        Cursor c = mResolver.query(mMembersUri,
+                new String[]{
+                        MediaStore.Audio.Playlists.Members._ID,
+                        MediaStore.Audio.Playlists.Members.PLAY_ORDER},
+                null,
+                null,
+                null);
+        if (c == null)
+            return 0;
+
+        ArrayList<ContentProviderOperation> moves = new ArrayList<>();
+        int kept = 0;
+        while (c.moveToNext()) {
+            int playOrder = c.getInt(1);
+            Integer position = positions.get(playOrder);
+            if (position == null)
+                continue;
+
+            if (position == playOrder) {
+                if (playOrder < mFirstInserted)
+                    kept++;
+                continue;
+            }
+
+            moves.add(ContentProviderOperation.newUpdate(mMembersUri)
+                    .withValue(MediaStore.Audio.Playlists.Members.PLAY_ORDER, position)
+                    .withSelection(MediaStore.Audio.Playlists.Members._ID + "=?",
+                            new String[]{"" + c.getLong(0)})
+                    .build());
+
+            if (moves.size() == PlaylistWriter.BATCH_SIZE) {
+                mStats.moved(moves.size(), apply(moves));
+                moves.clear();
+            }
+        }
+        c.close();
+
+        if (!moves.isEmpty())
+            mStats.moved(moves.size(), apply(moves));
+        return kept;
+    }
+
+    private boolean apply(ArrayList<ContentProviderOperation> operations) {
+        try {
+            mResolver.applyBatch(MediaStore.AUTHORITY, operations);
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Cannot sync the members of playlist " + mPlaylistId, e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.alm.playlistimporter;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import java.util.List;
+
+import rx.functions.Func1;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Writes chunks of parsed tracks into a playlist with a single bulk insert per chunk.
+ * Unmatched tracks are passed through untouched.
+ */
+public class PlaylistWriter implements Func1<List<Track>, List<Track>> {
+
+    public static final int BATCH_SIZE = 200;
+
+    private ContentResolver mResolver;
+    private long mPlaylistId;
+    private Uri mMembersUri;
+    private ImportStats mStats;
+
+    public PlaylistWriter(ContentResolver cr, long playlistId, ImportStats stats) {
+        mResolver = cr;
+        mStats = stats;
+        mPlaylistId = playlistId;
+        mMembersUri = MediaStore.Audio.Playlists.Members.getContentUri("external", playlistId);
+    }
+
+    @Override
+    public List<Track> call(List<Track> tracks) {
+        ContentValues[] values = getContentValues(tracks);
+        if (values.length == 0)
+            return tracks;
+
+        long start = System.nanoTime();
+        boolean added = mResolver.bulkInsert(mMembersUri, values) == values.length;
+        mStats.write.recordSince(start);
+        mStats.written(values.length, added);
+
+        for (Track t : tracks) {
+            if (t.id != -1)
+                t.isAdded = added;
+        }
+
+        return tracks;
+    }
+
+    private ContentValues[] getContentValues(List<Track> tracks) {
+        int count = 0;
+        for (Track t : tracks) {
+            if (t.id != -1)
+                count++;
+        }
+
+        ContentValues[] values = new ContentValues[count];
+        int i = 0;
+        for (Track t : tracks) {
+            if (t.id == -1)
+                continue;
+
+            ContentValues v = new ContentValues(3);
+            v.put(MediaStore.Audio.Playlists.Members.PLAYLIST_ID, mPlaylistId);
+            v.put(MediaStore.Audio.Playlists.Members.AUDIO_ID, t.id);
+            v.put(MediaStore.Audio.Playlists.Members.PLAY_ORDER, t.position);
+            values[i++] = v;
+        }
+
+        return values;
+    }
+}
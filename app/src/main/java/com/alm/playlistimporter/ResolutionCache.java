@@ -0,0 +1,207 @@
+package com.alm.playlistimporter;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.provider.MediaStore;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Remembers which library track every playlist entry was resolved to, so a playlist imported
+ * again doesn't need to load the library. Every entry keeps the path and modification date
+ * its track had, and a hit only counts if the library still has the track with both: syncing
+ * the library invalidates the entries of the tracks it touched, not the whole cache.
+ */
+public class ResolutionCache extends SQLiteOpenHelper {
+
+    private static final String DB_NAME = "resolution_cache.db";
+    private static final int DB_VERSION = 2;
+
+    private static final String TABLE_TRACKS = "tracks";
+    private static final String KEY = "entry_key", ID = "media_id", TITLE = "title",
+            ARTIST = "artist", DATA = "data", MODIFIED = "date_modified";
+
+    private static ResolutionCache sInstance;
+
+    public static synchronized ResolutionCache getInstance(Context context) {
+        if (sInstance == null)
+            sInstance = new ResolutionCache(context.getApplicationContext());
+
+        return sInstance;
+    }
+
+    private ResolutionCache(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_TRACKS + " ("
+                + KEY + " TEXT PRIMARY KEY, "
+                + ID + " INTEGER NOT NULL, "
+                + TITLE + " TEXT, "
+                + ARTIST + " TEXT, "
+                + DATA + " TEXT, "
+                + MODIFIED + " INTEGER)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TRACKS);
+        db.execSQL("DROP TABLE IF EXISTS meta");
+        onCreate(db);
+    }
+
+    /**
+     * Looks up every entry and checks the hits against the library with a single query.
+     * Must not be called from the main thread.
+     * @return the cached track of every entry, at the same index, or null if it's not known
+     * or its track has changed since
+     */
+    public List<Track> getAll(ContentResolver cr, List<Track> entries) {
+        List<Track> tracks = new ArrayList<>(entries.size());
+        long[] modified = new long[entries.size()];
+        Set<Long> ids = new HashSet<>();
+
+        SQLiteDatabase db = getReadableDatabase();
+        for (int i = 0; i < entries.size(); i++) {
+            Cursor c = db.query(TABLE_TRACKS,
+                    new String[]{ID, TITLE, ARTIST, DATA, MODIFIED},
+                    KEY + "=?", new String[]{keyFor(entries.get(i))},
+                    null, null, null);
+
+            Track t = null;
+            if (c.moveToFirst()) {
+                t = new Track(c.getInt(0), c.getString(1), c.getString(2), c.getString(3), true);
+                modified[i] = c.getLong(4);
+                ids.add((long) t.id);
+            }
+            tracks.add(t);
+            c.close();
+        }
+
+        if (ids.isEmpty())
+            return tracks;
+
+        Map<Long, LibraryFile> library = readLibrary(cr, ids);
+        for (int i = 0; i < tracks.size(); i++) {
+            Track t = tracks.get(i);
+            if (t == null)
+                continue;
+
+            LibraryFile file = library.get((long) t.id);
+            if (file == null || file.modified != modified[i] || !TextUtils.equals(file.data, t.uri))
+                tracks.set(i, null);
+        }
+
+        return tracks;
+    }
+
+    /**
+     * Stores the resolved tracks in a single transaction, with the path and modification
+     * date they have in the library.
+     * @param entries the parsed playlist entries
+     * @param tracks the track each entry resolved to, at the same index
+     */
+    public void putAll(ContentResolver cr, List<Track> entries, List<Track> tracks) {
+        Set<Long> ids = new HashSet<>();
+        for (Track t : tracks)
+            ids.add((long) t.id);
+        Map<Long, LibraryFile> library = readLibrary(cr, ids);
+
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_TRACKS
+                + " (" + KEY + "," + ID + "," + TITLE + "," + ARTIST + "," + DATA + "," + MODIFIED
+                + ") VALUES (?,?,?,?,?,?)");
+
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < entries.size(); i++) {
+                Track t = tracks.get(i);
+                LibraryFile file = library.get((long) t.id);
+                if (file == null)
+                    continue; // removed meanwhile
+
+                insert.clearBindings();
+                insert.bindString(1, keyFor(entries.get(i)));
+                insert.bindLong(2, t.id);
+                bindString(insert, 3, t.title);
+                bindString(insert, 4, t.artist);
+                bindString(insert, 5, file.data);
+                insert.bindLong(6, file.modified);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+    }
+
+    private static class LibraryFile {
+
+        final String data;
+        final long modified;
+
+        LibraryFile(String data, long modified) {
+            this.data = data;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * @return the path and modification date of the library tracks with the ids, by id
+     */
+    private static Map<Long, LibraryFile> readLibrary(ContentResolver cr, Set<Long> ids) {
+        Map<Long, LibraryFile> files = new HashMap<>(ids.size() * 2);
+        if (ids.isEmpty())
+            return files;
+
+        Cursor c = cr.query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                new String[]{
+                        MediaStore.Audio.Media._ID,
+                        MediaStore.Audio.Media.DATA,
+                        MediaStore.Audio.Media.DATE_MODIFIED},
+                MediaStore.Audio.Media._ID + " IN (" + TextUtils.join(",", ids) + ")",
+                null,
+                null);
+        if (c == null)
+            return files;
+
+        while (c.moveToNext())
+            files.put(c.getLong(0), new LibraryFile(c.getString(1), c.getLong(2)));
+        c.close();
+
+        return files;
+    }
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null)
+            statement.bindNull(index);
+        else
+            statement.bindString(index, value);
+    }
+
+    /**
+     * Entries are keyed by their normalized path or, if they have none, by title and artist.
+     */
+    static String keyFor(Track entry) {
+        if (entry.uri != null && !entry.uri.trim().isEmpty())
+            return "p:" + entry.uri.trim().replace('\\', '/').toLowerCase(Locale.US);
+
+        return "t:" + entry.title + '\u0000' + entry.artist;
+    }
+}
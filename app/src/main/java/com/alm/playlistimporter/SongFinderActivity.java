@@ -1,15 +1,13 @@
 package com.alm.playlistimporter;
 
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.DialogInterface;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import android.support.annotation.Nullable;
-import android.support.v4.app.LoaderManager;
-import android.support.v4.content.Loader;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
@@ -22,21 +20,33 @@ import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action1;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
 
 /**
  * Created by A. Labay on 06/08/16.
  * As part of the project Playlist Importer.
  */
-public class SongFinderActivity extends AppCompatActivity
-        implements LoaderManager.LoaderCallbacks<List<Track>> {
+public class SongFinderActivity extends AppCompatActivity {
 
     public static final String EXTRA_PLAYLIST_ID = "extra_playlist_id";
     public static final String EXTRA_SONG = "extra_song_key";
 
+    private static final long DEBOUNCE_MS = 300;
+
     private SongAdapter mAdapter;
 
+    private final PublishSubject<String> mQueries = PublishSubject.create();
+    private Subscription mSearch, mUpdate;
+
     private long mPlaylistId;
     private String mSongText;
 
@@ -77,7 +87,7 @@ public class SongFinderActivity extends AppCompatActivity
             @Override
             public void onTextChanged(CharSequence charSequence, int i, int i1, int i2) {
                 if (charSequence.length() > 2) {
-                    query(charSequence.toString());
+                    mQueries.onNext(charSequence.toString());
                 }
             }
 
@@ -89,9 +99,57 @@ public class SongFinderActivity extends AppCompatActivity
     @Override
     protected void onPostCreate(@Nullable Bundle savedInstanceState) {
         super.onPostCreate(savedInstanceState);
-        Bundle bundle = new Bundle(1);
-        bundle.putString("query", mSongText);
-        getSupportLoaderManager().initLoader(0, bundle, this);
+        mSearch = createSearch();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mSearch != null)
+            mSearch.unsubscribe();
+        if (mUpdate != null)
+            mUpdate.unsubscribe();
+    }
+
+    /**
+     * Queries are debounced while typing and a new one cancels the search of the previous,
+     * the results come from the in-memory index of the library. A failed search only drops
+     * the results of its own query, the next one is still searched.
+     */
+    private Subscription createSearch() {
+        final ContentResolver cr = getContentResolver();
+        return mQueries
+                .debounce(DEBOUNCE_MS, TimeUnit.MILLISECONDS)
+                .startWith(mSongText)
+                .switchMap(new Func1<String, Observable<SearchIndex.Results>>() {
+                    @Override
+                    public Observable<SearchIndex.Results> call(final String query) {
+                        return Observable
+                                .fromCallable(new Callable<SearchIndex.Results>() {
+                                    @Override
+                                    public SearchIndex.Results call() throws Exception {
+                                        return LibrarySearch.get(cr).search(query);
+                                    }
+                                })
+                                .subscribeOn(Schedulers.io())
+                                .observeOn(AndroidSchedulers.mainThread())
+                                .doOnError(new Action1<Throwable>() {
+                                    @Override
+                                    public void call(Throwable throwable) {
+                                        Toast.makeText(SongFinderActivity.this, "Error searching", Toast.LENGTH_SHORT).show();
+                                    }
+                                })
+                                .onErrorResumeNext(Observable.<SearchIndex.Results>empty());
+                    }
+                })
+                .subscribe(new Action1<SearchIndex.Results>() {
+                    @Override
+                    public void call(SearchIndex.Results results) {
+                        if (mUpdate != null)
+                            mUpdate.unsubscribe();
+                        mUpdate = mAdapter.update(new ResultsSource(results));
+                    }
+                });
     }
 
     private void confirmAddToPlaylist(final Track song) {
@@ -123,26 +181,6 @@ public class SongFinderActivity extends AppCompatActivity
         }
     }
 
-    private void query(String text) {
-        Bundle bundle = new Bundle(1);
-        bundle.putString("query", text);
-        getSupportLoaderManager().restartLoader(0, bundle, this);
-    }
-
-    @Override
-    public Loader<List<Track>> onCreateLoader(int id, Bundle args) {
-        return new SearchLoader(this, args.getString("query"));
-    }
-
-    @Override
-    public void onLoadFinished(Loader<List<Track>> loader, List<Track> data) {
-        mAdapter.set(data);
-    }
-
-    @Override
-    public void onLoaderReset(Loader<List<Track>> loader) {
-    }
-
     private static class SongAdapter extends BaseAdapter<Track, TrackHolder> {
 
         public SongAdapter(Context context, OnItemClickListener<Track> itemClickListener) {
@@ -155,6 +193,38 @@ public class SongFinderActivity extends AppCompatActivity
         }
     }
 
+    /**
+     * Tracks are only built for the rows being bound, the diffs compare the results by id.
+     */
+    private static class ResultsSource implements BaseAdapter.PagedSource<Track> {
+
+        private final SearchIndex.Results mResults;
+
+        ResultsSource(SearchIndex.Results results) {
+            mResults = results;
+        }
+
+        @Override
+        public int size() {
+            return mResults.size();
+        }
+
+        @Override
+        public Track get(int position) {
+            return mResults.get(position);
+        }
+
+        @Override
+        public long getId(int position) {
+            return mResults.getId(position);
+        }
+
+        @Override
+        public boolean hasSameContents(int position, BaseAdapter.PagedSource<Track> old, int oldPosition) {
+            return mResults.hasSameContents(position, ((ResultsSource) old).mResults, oldPosition);
+        }
+    }
+
     private static class TrackHolder extends BaseAdapter.BaseHolder<Track> {
 
         public TextView mTitleView, mArtistView;
@@ -178,49 +248,4 @@ public class SongFinderActivity extends AppCompatActivity
             });
         }
     }
-
-    public static class SearchLoader extends AsyncLoader<List<Track>> {
-
-        public static final String[] PROJECTION = new String[] {
-                MediaStore.Audio.Media._ID,
-                MediaStore.Audio.Media.TITLE,
-                MediaStore.Audio.Media.ARTIST
-        };
-
-        private String query;
-
-        public SearchLoader(Context context, String query) {
-            super(context);
-            this.query = "%" + MediaStore.Audio.keyFor(query) + "%";
-        }
-
-        @Override
-        public List<Track> loadInBackground() {
-            Cursor cursor = getContext()
-                    .getContentResolver()
-                    .query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
-                            PROJECTION,
-                            MediaStore.Audio.Media.TITLE_KEY + " LIKE ? OR " + MediaStore.Audio.Media.ARTIST_KEY + " LIKE ?",
-                            new String[]{query, query},
-                            MediaStore.Audio.Media.ARTIST + "," + MediaStore.Audio.Media.TITLE);
-
-            if (cursor == null)
-                return null;
-
-            if (!cursor.moveToFirst()) {
-                cursor.close();
-                return null;
-            }
-
-            List<Track> songs = new ArrayList<>(cursor.getCount());
-
-            do {
-                songs.add(new Track(cursor.getInt(0), cursor.getString(1), cursor.getString(2)));
-            } while (cursor.moveToNext());
-
-            cursor.close();
-
-            return songs;
-        }
-    }
 }
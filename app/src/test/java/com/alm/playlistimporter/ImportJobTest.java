@@ -0,0 +1,119 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Func1;
+import rx.internal.util.RxRingBuffer;
+import rx.observables.ConnectableObservable;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.*;
+
+/**
+ * The threads of an import, with entries made up instead of a file and nothing written.
+ */
+public class ImportJobTest {
+
+    /**
+     * Paced like {@link PlaylistReader}
+     */
+    private static class Entries extends PacedOnSubscribe<Track> {
+
+        private final int mCount;
+
+        Entries(int count) {
+            mCount = count;
+        }
+
+        @Override
+        protected void emit(Subscriber<Track> subscriber) {
+            for (int i = 0; i < mCount && !subscriber.isUnsubscribed(); i++) {
+                Track entry = new Track(-1, "Title " + i, "Artist");
+                entry.position = i;
+                subscriber.onNext(entry);
+            }
+            subscriber.onCompleted();
+        }
+    }
+
+    private static final Func1<List<Track>, List<Track>> SAME = new Func1<List<Track>, List<Track>>() {
+        @Override
+        public List<Track> call(List<Track> tracks) {
+            return tracks;
+        }
+    };
+
+    /**
+     * @return the chunks received, observed on a single thread of their own like the service does
+     */
+    private static TestSubscriber<List<Track>> run(final int count, final int from) throws InterruptedException {
+        Observable<List<Track>> chunks = ImportJob.start(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return from;
+            }
+        }, new Func1<Integer, Observable<List<Track>>>() {
+            @Override
+            public Observable<List<Track>> call(Integer from) {
+                return ImportJob.chunks(PlaylistReader.resolveInOrder(Observable.create(new Entries(count)), SAME, from))
+                        .map(SAME);
+            }
+        });
+
+        ExecutorService main = Executors.newSingleThreadExecutor();
+        try {
+            ConnectableObservable<List<Track>> results = chunks.publish();
+            TestSubscriber<List<Track>> subscriber = new TestSubscriber<>();
+            results.observeOn(Schedulers.from(main)).subscribe(subscriber);
+            results.connect();
+
+            subscriber.awaitTerminalEvent(60, TimeUnit.SECONDS);
+            return subscriber;
+        } finally {
+            main.shutdown();
+        }
+    }
+
+    private static void assertPositions(TestSubscriber<List<Track>> subscriber, int from, int count) {
+        subscriber.assertNoErrors();
+        subscriber.assertCompleted();
+
+        int position = from;
+        for (List<Track> chunk : subscriber.getOnNextEvents()) {
+            assertTrue(chunk.size() <= PlaylistWriter.BATCH_SIZE);
+            for (Track track : chunk)
+                assertEquals(position++, track.position);
+        }
+        assertEquals(count, position);
+    }
+
+    @Test(timeout = 120000)
+    public void importsMoreThanTheQueuesHold() throws InterruptedException {
+        // every operator queue between the reader and the subscriber full several times over
+        int count = 4 * RxRingBuffer.SIZE * PlaylistWriter.BATCH_SIZE + 17;
+        assertPositions(run(count, 0), 0, count);
+    }
+
+    @Test(timeout = 120000)
+    public void resumesFromTheCheckpoint() throws InterruptedException {
+        int count = 2 * RxRingBuffer.SIZE * PlaylistWriter.BATCH_SIZE;
+        assertPositions(run(count, 1000), 1000, count);
+    }
+
+    @Test(timeout = 60000)
+    public void emptyPlaylist() throws InterruptedException {
+        TestSubscriber<List<Track>> subscriber = run(0, 0);
+        subscriber.assertNoErrors();
+        subscriber.assertCompleted();
+        subscriber.assertNoValues();
+    }
+}
@@ -0,0 +1,126 @@
+package com.alm.playlistimporter.benchmark;
+
+import com.alm.playlistimporter.LibraryIndex;
+import com.alm.playlistimporter.LibrarySource;
+import com.alm.playlistimporter.Track;
+
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Random;
+
+import rx.Subscriber;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Synthetic playlists and libraries for the benchmarks, always generated with the same seed.
+ */
+final class Fixtures {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Plain lower case keys, the benchmarks only need them to be consistent.
+     */
+    static final LibraryIndex.KeyGenerator KEYS = new LibraryIndex.KeyGenerator() {
+        @Override
+        public String keyFor(String name) {
+            return name == null ? null : name.trim().toLowerCase(Locale.US);
+        }
+    };
+
+    private static final String[] WORDS = {"love", "night", "the", "blue", "song", "heart",
+            "summer", "rain", "fire", "home", "road", "dream", "light", "city", "time", "gold"};
+
+    private Fixtures() {
+    }
+
+    static String title(int i) {
+        return WORDS[i % WORDS.length] + " " + WORDS[(i / WORDS.length) % WORDS.length] + " " + i;
+    }
+
+    static String artist(int i) {
+        return "Artist " + (i % 997);
+    }
+
+    static String path(int i) {
+        return "C:\\Music\\" + artist(i) + "\\Album " + (i % 101) + "\\" + String.format(Locale.US, "%02d", i % 20) + " - " + title(i) + ".mp3";
+    }
+
+    static String devicePath(int i) {
+        return "/storage/emulated/0/Music/" + artist(i) + "/Album " + (i % 101) + "/" + String.format(Locale.US, "%02d", i % 20) + " - " + title(i) + ".mp3";
+    }
+
+    /**
+     * @return an extended M3U file with the given number of entries
+     */
+    static byte[] playlist(int entries) {
+        StringBuilder sb = new StringBuilder(entries * 120);
+        sb.append("#EXTM3U\r\n");
+        for (int i = 0; i < entries; i++) {
+            sb.append("#EXTINF:").append(120 + i % 300).append(',')
+                    .append(title(i)).append(" - ").append(artist(i)).append("\r\n")
+                    .append(path(i)).append("\r\n");
+        }
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    /**
+     * @return a library with the given number of tracks, the same ones {@link #playlist(int)} refers to
+     */
+    static LibraryIndex library(final int tracks) {
+        return LibraryIndex.load(new LibrarySource() {
+            @Override
+            public int size() {
+                return tracks;
+            }
+
+            @Override
+            public LibraryIndex.KeyGenerator getKeyGenerator() {
+                return KEYS;
+            }
+
+            @Override
+            public void read(Visitor visitor) {
+                for (int i = 0; i < tracks; i++) {
+                    visitor.visit(new Track(i, title(i), artist(i), devicePath(i), true),
+                            KEYS.keyFor(title(i)), KEYS.keyFor(artist(i)));
+                }
+            }
+        });
+    }
+
+    /**
+     * Titles with many dashes, the worst case of the title/artist split.
+     */
+    static String[] dashedLines(int count, int dashes) {
+        Random random = new Random(42);
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder("#EXTINF:215,");
+            for (int d = 0; d <= dashes; d++) {
+                if (d > 0)
+                    sb.append(random.nextBoolean() ? " - " : "-");
+                sb.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            lines[i] = sb.toString();
+        }
+        return lines;
+    }
+
+    /**
+     * Hands every emitted track to the consumer so the work isn't optimized away.
+     */
+    static abstract class ConsumingSubscriber extends Subscriber<Track> {
+
+        @Override
+        public void onCompleted() {
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
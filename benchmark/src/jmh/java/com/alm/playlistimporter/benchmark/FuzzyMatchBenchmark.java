@@ -0,0 +1,64 @@
+package com.alm.playlistimporter.benchmark;
+
+import com.alm.playlistimporter.FuzzyMatcher;
+import com.alm.playlistimporter.Track;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Fuzzy lookups of entries with a typo and with title and artist swapped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FuzzyMatchBenchmark {
+
+    private static final int ENTRIES = 256;
+
+    @Param({"1000", "50000"})
+    public int tracks;
+
+    private FuzzyMatcher mMatcher;
+    private String[] mTitles, mArtists;
+    private int mNext = 0;
+
+    @Setup
+    public void setUp() {
+        mMatcher = new FuzzyMatcher(FuzzyMatcher.DEFAULT_THRESHOLD);
+        for (int i = 0; i < tracks; i++)
+            mMatcher.add(new Track(i, Fixtures.title(i), Fixtures.artist(i), Fixtures.devicePath(i), true));
+        mMatcher.build();
+
+        mTitles = new String[ENTRIES];
+        mArtists = new String[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            int track = (int) ((i * 2654435761L) % tracks);
+            String title = Fixtures.title(track);
+            if (i % 2 == 0) {
+                mTitles[i] = title.substring(1);
+                mArtists[i] = Fixtures.artist(track);
+            } else {
+                mTitles[i] = Fixtures.artist(track);
+                mArtists[i] = title;
+            }
+        }
+    }
+
+    @Benchmark
+    public Track find() {
+        int i = mNext++ & (ENTRIES - 1);
+        return mMatcher.find(mTitles[i], mArtists[i]);
+    }
+}
@@ -0,0 +1,78 @@
+package com.alm.playlistimporter.benchmark;
+
+import com.alm.playlistimporter.LibraryIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Matching of playlist entries against an in-memory fake library: building the index once
+ * per import and resolving entries found by path, by title and not found at all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LibraryMatchBenchmark {
+
+    private static final int ENTRIES = 1024;
+
+    @Param({"1000", "40000"})
+    public int tracks;
+
+    private LibraryIndex mLibrary;
+    private String[] mTitles, mArtists, mPaths, mRenamed, mMissing;
+
+    @Setup
+    public void setUp() {
+        mLibrary = Fixtures.library(tracks);
+        mTitles = new String[ENTRIES];
+        mArtists = new String[ENTRIES];
+        mPaths = new String[ENTRIES];
+        mRenamed = new String[ENTRIES];
+        mMissing = new String[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            int track = (int) ((i * 2654435761L) % tracks);
+            mTitles[i] = Fixtures.title(track);
+            mArtists[i] = Fixtures.artist(track);
+            mPaths[i] = Fixtures.path(track);
+            mRenamed[i] = "C:\\Music\\renamed_" + i + ".mp3";
+            mMissing[i] = Fixtures.title(tracks + i);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LibraryIndex buildIndex() {
+        return Fixtures.library(tracks);
+    }
+
+    @Benchmark
+    public void matchByPath(Blackhole blackhole) {
+        for (int i = 0; i < ENTRIES; i++)
+            blackhole.consume(mLibrary.find(mTitles[i], mArtists[i], mPaths[i]));
+    }
+
+    @Benchmark
+    public void matchByTitle(Blackhole blackhole) {
+        for (int i = 0; i < ENTRIES; i++)
+            blackhole.consume(mLibrary.find(mTitles[i], mArtists[i], mRenamed[i]));
+    }
+
+    @Benchmark
+    public void noMatch(Blackhole blackhole) {
+        for (int i = 0; i < ENTRIES; i++)
+            blackhole.consume(mLibrary.find(mMissing[i], mArtists[i], mRenamed[i]));
+    }
+}
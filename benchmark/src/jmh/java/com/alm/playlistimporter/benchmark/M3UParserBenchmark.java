@@ -0,0 +1,62 @@
+package com.alm.playlistimporter.benchmark;
+
+import com.alm.playlistimporter.M3UPlaylistParser;
+import com.alm.playlistimporter.Track;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Whole file parsing of extended M3U playlists, without resolving the entries, both as a
+ * stream and from the bytes in memory like mapped files are.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class M3UParserBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int entries;
+
+    private byte[] mPlaylist;
+
+    @Setup
+    public void setUp() {
+        mPlaylist = Fixtures.playlist(entries);
+    }
+
+    @Benchmark
+    public void parse(final Blackhole blackhole) throws IOException {
+        new M3UPlaylistParser().parse(new ByteArrayInputStream(mPlaylist), new Fixtures.ConsumingSubscriber() {
+            @Override
+            public void onNext(Track track) {
+                blackhole.consume(track);
+            }
+        });
+    }
+
+    @Benchmark
+    public void parseBuffer(final Blackhole blackhole) {
+        new M3UPlaylistParser().parse(ByteBuffer.wrap(mPlaylist), new Fixtures.ConsumingSubscriber() {
+            @Override
+            public void onNext(Track track) {
+                blackhole.consume(track);
+            }
+        });
+    }
+}
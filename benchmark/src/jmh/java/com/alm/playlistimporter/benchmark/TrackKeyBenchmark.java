@@ -0,0 +1,54 @@
+package com.alm.playlistimporter.benchmark;
+
+import com.alm.playlistimporter.M3UTokenizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Title/artist split of <code>#EXTINF</code> lines with many dashes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrackKeyBenchmark {
+
+    private static final int LINES = 1000;
+
+    @Param({"1", "2", "5", "20"})
+    public int dashes;
+
+    private String mLines;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        for (String line : Fixtures.dashedLines(LINES, dashes))
+            sb.append(line).append('\n');
+        mLines = sb.toString();
+    }
+
+    @Benchmark
+    public void splitTitleArtist(Blackhole blackhole) throws IOException {
+        M3UTokenizer tokenizer = new M3UTokenizer(new StringReader(mLines));
+        while (tokenizer.nextLine()) {
+            tokenizer.parseEntry();
+            blackhole.consume(tokenizer.title());
+            blackhole.consume(tokenizer.artist());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.alm.playlistimporter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Chooses between library tracks that share the file name or the title and artist of a
+ * playlist entry, with the length and the album the playlist gives. The same song is rarely
+ * in two albums with the same length, but a live version or a remaster usually differs by
+ * a few seconds at least.
+ */
+public class CandidateRanker {
+
+    /**
+     * Seconds two lengths may differ by and still be the same file, playlists round them
+     */
+    static final int DURATION_TOLERANCE = 2;
+
+    /**
+     * @param candidates library tracks, with their durations in seconds
+     * @param entry the playlist entry, with its duration and album if known
+     * @return the only candidate close enough in length, told apart by the album if there's
+     * more than one, or null if there isn't a clear winner
+     */
+    public static Track best(List<Track> candidates, Track entry) {
+        if (entry.duration < 0 && entry.album == null)
+            return null;
+
+        List<Track> close = new ArrayList<>(candidates.size());
+        for (Track t : candidates) {
+            if (entry.duration < 0 || (t.duration >= 0 && Math.abs(t.duration - entry.duration) <= DURATION_TOLERANCE))
+                close.add(t);
+        }
+
+        if (close.size() == 1 && entry.duration >= 0)
+            return close.get(0);
+        if (close.isEmpty() || entry.album == null)
+            return null;
+
+        Track best = null;
+        for (Track t : close) {
+            if (!entry.album.equalsIgnoreCase(t.album))
+                continue;
+            if (best != null)
+                return null;
+            best = t;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,285 @@
+package com.alm.playlistimporter;
+
+import java.util.Arrays;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Approximate title and artist matching, for entries the exact lookups miss because of
+ * accents, "feat." suffixes, typos or the title and the artist being swapped.
+ *
+ * Candidates are found with an inverted index of the trigrams of every library track and
+ * only the best few of them are compared with a bounded edit distance.
+ */
+public class FuzzyMatcher {
+
+    public static final float DEFAULT_THRESHOLD = 0.8f;
+
+    /**
+     * Number of candidates compared with the edit distance
+     */
+    private static final int CANDIDATES = 8;
+
+    /**
+     * The best match must beat any other track by this much, otherwise it's ambiguous
+     */
+    private static final float MARGIN = 0.05f;
+
+    private final float mThreshold;
+
+    private Track[] mTracks = new Track[64];
+    private String[] mTitles = new String[64], mArtists = new String[64];
+    private int[] mGramCounts = new int[64];
+    private int mSize = 0;
+
+    private final TrigramIndex mIndex = new TrigramIndex();
+    private int mCommon;
+
+    private final ThreadLocal<Scratch> mScratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch(mSize);
+        }
+    };
+
+    /**
+     * @param threshold minimum similarity, between 0 and 1, a track needs to be accepted
+     */
+    public FuzzyMatcher(float threshold) {
+        mThreshold = threshold;
+    }
+
+    /**
+     * Adds a library track, all of them must be added before calling {@link #build()}.
+     */
+    public void add(Track track) {
+        if (mIndex.isBuilt())
+            throw new IllegalStateException("Already built");
+
+        String title = TextKeys.normalize(track.title, true), artist = TextKeys.normalize(track.artist, true);
+        if (title.isEmpty() && artist.isEmpty())
+            return;
+
+        if (mSize == mTracks.length) {
+            int capacity = mSize * 2;
+            mTracks = Arrays.copyOf(mTracks, capacity);
+            mTitles = Arrays.copyOf(mTitles, capacity);
+            mArtists = Arrays.copyOf(mArtists, capacity);
+            mGramCounts = Arrays.copyOf(mGramCounts, capacity);
+        }
+
+        long[] grams = trigrams(join(title, artist));
+        mIndex.add(mSize, grams);
+
+        mTracks[mSize] = track;
+        mTitles[mSize] = title;
+        mArtists[mSize] = artist;
+        mGramCounts[mSize] = grams.length;
+        mSize++;
+    }
+
+    /**
+     * Freezes the index, must be called once every track has been added.
+     */
+    public void build() {
+        mIndex.build();
+
+        // trigrams in more than 5% of the library say almost nothing about a track
+        mCommon = Math.max(64, mSize / 20);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the most similar track, if it's similar enough and clearly better than the rest
+     */
+    public Track find(String title, String artist) {
+        if (!mIndex.isBuilt())
+            throw new IllegalStateException("Not built");
+
+        String query = join(TextKeys.normalize(title, true), TextKeys.normalize(artist, true));
+        if (query.isEmpty() || mSize == 0)
+            return null;
+
+        long[] grams = trigrams(query);
+        Scratch scratch = mScratch.get();
+        scratch.ensure(mSize);
+
+        // count the shared trigrams, leaving the very common ones out if there are enough others
+        int rare = 0;
+        for (long gram : grams) {
+            int[] posting = mIndex.get(gram);
+            if (posting != null && posting.length <= mCommon)
+                rare++;
+        }
+        boolean skipCommon = rare >= 3;
+        for (long gram : grams) {
+            int[] posting = mIndex.get(gram);
+            if (posting == null || (skipCommon && posting.length > mCommon))
+                continue;
+
+            for (int doc : posting)
+                scratch.count(doc);
+        }
+
+        // best candidates by the dice coefficient of their trigrams
+        int[] best = scratch.best;
+        float[] bestScores = scratch.bestScores;
+        int found = 0;
+        for (int i = 0; i < scratch.touchedCount; i++) {
+            int doc = scratch.touched[i];
+            float dice = 2f * scratch.counts[doc] / (grams.length + mGramCounts[doc]);
+            scratch.counts[doc] = 0;
+
+            if (found < CANDIDATES) {
+                found++;
+            } else if (dice <= bestScores[found - 1]) {
+                continue;
+            }
+
+            int j = found - 1;
+            while (j > 0 && bestScores[j - 1] < dice) {
+                best[j] = best[j - 1];
+                bestScores[j] = bestScores[j - 1];
+                j--;
+            }
+            best[j] = doc;
+            bestScores[j] = dice;
+        }
+        scratch.touchedCount = 0;
+
+        // verify them with the edit distance, both in order and with title and artist swapped
+        float[] similarities = scratch.similarities;
+        int winner = -1;
+        for (int i = 0; i < found; i++) {
+            int doc = best[i];
+            similarities[i] = Math.max(
+                    similarity(query, join(mTitles[doc], mArtists[doc]), scratch),
+                    similarity(query, join(mArtists[doc], mTitles[doc]), scratch));
+
+            if (winner < 0 || similarities[i] > similarities[winner])
+                winner = i;
+        }
+
+        if (winner < 0 || similarities[winner] < mThreshold)
+            return null;
+
+        Track track = mTracks[best[winner]];
+        for (int i = 0; i < found; i++) {
+            if (mTracks[best[i]].id != track.id && similarities[i] > similarities[winner] - MARGIN)
+                return null;
+        }
+
+        return new Track(track.id, track.title, track.artist, track.uri, true);
+    }
+
+    /**
+     * @return 1 - edit distance / length, or 0 if it's below the threshold
+     */
+    private float similarity(String a, String b, Scratch scratch) {
+        int length = Math.max(a.length(), b.length());
+        if (length == 0)
+            return 0;
+
+        int max = (int) ((1 - mThreshold) * length);
+        int distance = distance(a, b, max, scratch);
+        if (distance > max)
+            return 0;
+
+        return 1 - (float) distance / length;
+    }
+
+    /**
+     * Levenshtein distance, giving up as soon as it's bigger than max.
+     * @return the distance or max + 1
+     */
+    static int distance(String a, String b, int max, Scratch scratch) {
+        int n = a.length(), m = b.length();
+        if (Math.abs(n - m) > max)
+            return max + 1;
+
+        int[] prev = scratch.row(0, m + 1), cur = scratch.row(1, m + 1);
+        for (int j = 0; j <= m; j++)
+            prev[j] = j;
+
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            int rowMin = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                cur[j] = d;
+                if (d < rowMin)
+                    rowMin = d;
+            }
+
+            if (rowMin > max)
+                return max + 1;
+
+            int[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+
+        return Math.min(prev[m], max + 1);
+    }
+
+    private static String join(String title, String artist) {
+        if (title.isEmpty())
+            return artist;
+        if (artist.isEmpty())
+            return title;
+        return title + ' ' + artist;
+    }
+
+    /**
+     * @return the distinct trigrams of the string padded with spaces
+     */
+    private static long[] trigrams(String s) {
+        return TrigramIndex.trigrams(' ' + s + ' ');
+    }
+
+    /**
+     * Per thread buffers, so lookups don't allocate and can run in parallel.
+     */
+    static class Scratch {
+
+        int[] counts;
+        int[] touched;
+        int touchedCount = 0;
+
+        final int[] best = new int[CANDIDATES];
+        final float[] bestScores = new float[CANDIDATES];
+        final float[] similarities = new float[CANDIDATES];
+
+        private final int[][] rows = new int[2][64];
+
+        Scratch(int size) {
+            counts = new int[size];
+            touched = new int[Math.min(size, 1024)];
+        }
+
+        void ensure(int size) {
+            if (counts.length < size)
+                counts = new int[size];
+        }
+
+        void count(int doc) {
+            if (counts[doc]++ == 0) {
+                if (touchedCount == touched.length)
+                    touched = Arrays.copyOf(touched, touched.length * 2);
+                touched[touchedCount++] = doc;
+            }
+        }
+
+        int[] row(int i, int length) {
+            if (rows[i].length < length)
+                rows[i] = new int[length * 2];
+            return rows[i];
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.alm.playlistimporter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * In-memory snapshot of the audio library, loaded once so that every playlist entry
+ * can be matched with hash lookups instead of library queries.
+ */
+public class LibraryIndex {
+
+    /**
+     * Builds the same title and artist keys the library was indexed with.
+     */
+    public interface KeyGenerator {
+
+        String keyFor(String name);
+    }
+
+    /**
+     * Marks a key shared by more than one track, such a key can't be used to match.
+     */
+    private static final Track AMBIGUOUS = new Track(-1, null, null);
+
+    private final PathTrie mByPath;
+    private final HashMap<String, Track> mByFile;
+    private final HashMap<String, Track> mByKey;
+
+    /**
+     * Every track of the title and artist keys shared by more than one
+     */
+    private final HashMap<String, List<Track>> mSameKey = new HashMap<>();
+    private final KeyGenerator mKeys;
+    private FuzzyMatcher mFuzzy;
+    private int mSize = 0;
+
+    public LibraryIndex(KeyGenerator keys, int capacity) {
+        mKeys = keys;
+        mByPath = new PathTrie(capacity);
+        mByFile = new HashMap<>(capacity);
+        mByKey = new HashMap<>(capacity);
+    }
+
+    /**
+     * Reads the whole library into a new index.
+     */
+    public static LibraryIndex load(LibrarySource source) {
+        return load(source, null);
+    }
+
+    /**
+     * Reads the whole library into a new index.
+     * @param fuzzy empty matcher to fill with the same tracks, entries without an exact
+     *              match are looked up there. Null to only accept exact matches.
+     */
+    public static LibraryIndex load(LibrarySource source, final FuzzyMatcher fuzzy) {
+        int size = source.size();
+        final LibraryIndex index = new LibraryIndex(source.getKeyGenerator(), size > 0 ? size * 2 : 16);
+        source.read(new LibrarySource.Visitor() {
+            @Override
+            public void visit(Track track, String titleKey, String artistKey) {
+                index.add(track, titleKey, artistKey);
+                if (fuzzy != null)
+                    fuzzy.add(track);
+            }
+        });
+
+        if (fuzzy != null) {
+            fuzzy.build();
+            index.mFuzzy = fuzzy;
+        }
+
+        return index;
+    }
+
+    /**
+     * @param t the library track, its uri must be the path of the file
+     * @param titleKey the key of the title, as built by the {@link KeyGenerator}
+     * @param artistKey the key of the artist, as built by the {@link KeyGenerator}
+     */
+    public void add(Track t, String titleKey, String artistKey) {
+        mByPath.add(t);
+        put(mByFile, pathKey(t.uri), t);
+        putKey(titleKey(titleKey, artistKey), t);
+        mSize++;
+    }
+
+    private static void put(HashMap<String, Track> map, String key, Track t) {
+        if (key == null)
+            return;
+
+        Track old = map.put(key, t);
+        if (old != null && old.id != t.id)
+            map.put(key, AMBIGUOUS);
+    }
+
+    private void putKey(String key, Track t) {
+        if (key == null)
+            return;
+
+        Track old = mByKey.put(key, t);
+        if (old == null || old.id == t.id)
+            return;
+
+        mByKey.put(key, AMBIGUOUS);
+        List<Track> same = mSameKey.get(key);
+        if (same == null) {
+            same = new ArrayList<>(2);
+            same.add(old);
+            mSameKey.put(key, same);
+        }
+        same.add(t);
+    }
+
+    /**
+     * @see #find(Track)
+     */
+    public Track find(String title, String artist, String uri) {
+        return find(new Track(-1, title, artist, uri, false));
+    }
+
+    /**
+     * Looks for the track by its path first, by its title and artist after, then among the
+     * tracks that share any of them by the {@link CandidateRanker} and, if the index has a
+     * {@link FuzzyMatcher}, by the most similar title and artist.
+     * @param entry the playlist entry, its duration and album are used to choose between
+     *              tracks with the same path or title
+     * @return the matching track or null if there is no unique match
+     */
+    public Track find(Track entry) {
+        Track track = findByUri(entry.uri);
+        if (track != null)
+            return track;
+
+        track = findByTitle(entry.title, entry.artist);
+        if (track != null)
+            return track;
+
+        track = copy(CandidateRanker.best(candidates(entry), entry));
+        if (track != null || mFuzzy == null)
+            return track;
+
+        return mFuzzy.find(entry.title, entry.artist);
+    }
+
+    /**
+     * @return the tracks with the longest path suffix or the same title and artist keys
+     * as the entry, without repeating any
+     */
+    private List<Track> candidates(Track entry) {
+        List<Track> candidates = new ArrayList<>();
+        mByPath.candidates(entry.uri, candidates);
+
+        if (entry.title != null && entry.artist != null) {
+            List<Track> same = mSameKey.get(titleKey(mKeys.keyFor(entry.title), mKeys.keyFor(entry.artist)));
+            if (same != null) {
+                for (Track t : same) {
+                    if (!candidates.contains(t))
+                        candidates.add(t);
+                }
+            }
+        }
+
+        return candidates;
+    }
+
+    /**
+     * @param uri path of the track as written in the playlist
+     * @return the only track with the same file name, or with the most folders in common if
+     * many have it, null if none or many of them match
+     */
+    public Track findByUri(String uri) {
+        return copy(mByPath.find(uri));
+    }
+
+    /**
+     * @param path path of a file in the device
+     * @return the track of that file, the case doesn't matter, or null if there's none
+     */
+    public Track findByPath(String path) {
+        return copy(mByFile.get(pathKey(path)));
+    }
+
+    /**
+     * @param title track title, not the key
+     * @param artist track artist, not the key
+     * @return the only track with the same title and artist keys or null if none or many match
+     */
+    public Track findByTitle(String title, String artist) {
+        if (title == null || artist == null)
+            return null;
+
+        return copy(mByKey.get(titleKey(mKeys.keyFor(title), mKeys.keyFor(artist))));
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Tracks are handed out to the presenter which changes them, so never return the indexed one.
+     */
+    private static Track copy(Track t) {
+        if (t == null || t == AMBIGUOUS)
+            return null;
+
+        Track copy = new Track(t.id, t.title, t.artist, t.uri, true);
+        copy.duration = t.duration;
+        copy.album = t.album;
+        return copy;
+    }
+
+    /**
+     * @return the path with '/' as the only separator and in lower case
+     */
+    static String pathKey(String path) {
+        if (path == null)
+            return null;
+
+        return path.replace('\\', '/').toLowerCase(Locale.US);
+    }
+
+    private static String titleKey(String titleKey, String artistKey) {
+        if (titleKey == null || artistKey == null)
+            return null;
+
+        return titleKey + '\u0000' + artistKey;
+    }
+}
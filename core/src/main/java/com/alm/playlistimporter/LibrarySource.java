@@ -0,0 +1,36 @@
+package com.alm.playlistimporter;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * A library of audio tracks playlist entries are matched against, on a device it's
+ * the MediaStore but it can be any collection of files.
+ */
+public interface LibrarySource {
+
+    /**
+     * @return the number of tracks, used to size the index, or -1 if it's unknown
+     */
+    int size();
+
+    /**
+     * @return the generator of the title and artist keys of this library
+     */
+    LibraryIndex.KeyGenerator getKeyGenerator();
+
+    /**
+     * Reads every track of the library, in a single pass.
+     */
+    void read(Visitor visitor);
+
+    interface Visitor {
+
+        /**
+         * @param track the library track, its uri must be the path of the file
+         * @param titleKey the key of the title
+         * @param artistKey the key of the artist
+         */
+        void visit(Track track, String titleKey, String artistKey);
+    }
+}
@@ -0,0 +1,181 @@
+package com.alm.playlistimporter;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import rx.Subscriber;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Parses an M3U playlist straight from its bytes, usually a file mapped in memory. Line breaks
+ * are found in the bytes and only the lines of the entries are decoded, so it only works with
+ * charsets where ASCII chars are single bytes, see {@link PlaylistDecoder#isAsciiCompatible(Charset)}.
+ *
+ * Entries are the same {@link M3UPlaylistParser} finds reading the file as text.
+ */
+public class M3UBufferParser {
+
+    private static final byte[] EXTINF = {'#', 'E', 'X', 'T', 'I', 'N', 'F'};
+
+    private final ByteBuffer mBuffer;
+    private final CharsetDecoder mDecoder;
+    private final M3UTokenizer mTokenizer = new M3UTokenizer();
+    private char[] mChars = new char[256];
+
+    /**
+     * @param buffer the whole file, only its position is changed while parsing
+     */
+    public M3UBufferParser(ByteBuffer buffer, Charset charset) {
+        if (!PlaylistDecoder.isAsciiCompatible(charset))
+            throw new IllegalArgumentException("Lines can't be found in " + charset);
+
+        mBuffer = buffer;
+        mDecoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Emits, in order, the entries whose <code>#EXTINF</code> line starts from start and before
+     * end, start must be the beginning of a line. The position of the buffer is moved to the
+     * next line after every entry.
+     * @param position position in the playlist of the first entry
+     * @return the position for the entry after the last one emitted
+     */
+    public int parse(int start, int end, int position, Subscriber<? super Track> subscriber) {
+        int limit = mBuffer.limit();
+        int line = start;
+        while (line < end && line < limit && !subscriber.isUnsubscribed()) {
+            int lineEnd = lineEnd(line, limit);
+            int next = nextLine(lineEnd, limit);
+            if (!isEntry(line, lineEnd)) {
+                line = next;
+                continue; // header, comments and paths without info
+            }
+
+            // like the text parser, the line after the info is the path, even at the end of the file
+            String uri = null;
+            int pathEnd = -1;
+            if (next < limit) {
+                pathEnd = lineEnd(next, limit);
+                int length = decode(next, pathEnd); // it may grow the chars
+                uri = new String(mChars, 0, length);
+            }
+
+            try {
+                int length = decode(line, lineEnd);
+                mTokenizer.setLine(mChars, length);
+                mTokenizer.parseEntry();
+
+                Track track = new Track(-1, mTokenizer.title(), mTokenizer.artist(), uri, false);
+                track.duration = mTokenizer.duration();
+                track.position = position++;
+                subscriber.onNext(track);
+            } catch (Exception ignored) {
+                // something failed in this item so skip it but continue parsing the playlist
+            }
+
+            line = pathEnd < 0 ? limit : nextLine(pathEnd, limit);
+            mBuffer.position(Math.min(line, limit));
+        }
+
+        return position;
+    }
+
+    /**
+     * @return the start of the first line from the offset that can be parsed on its own,
+     * or the limit if there's none. The line before it isn't an entry, so it can't be a path.
+     */
+    public int alignToEntry(int offset) {
+        int limit = mBuffer.limit();
+        if (offset <= 0)
+            return 0;
+        if (offset >= limit)
+            return limit;
+
+        // back to the start of the line
+        int line = offset;
+        while (line > 0 && !isLineBreak(mBuffer.get(line - 1)))
+            line--;
+
+        int previous = -1;
+        while (line < limit) {
+            int lineEnd = lineEnd(line, limit);
+            boolean entry = isEntry(line, lineEnd);
+            if (line >= offset && entry && previous >= 0 && !isEntry(previous, lineEnd(previous, limit)))
+                return line;
+
+            previous = line;
+            line = nextLine(lineEnd, limit);
+        }
+
+        return limit;
+    }
+
+    private boolean isEntry(int start, int end) {
+        if (end - start < EXTINF.length)
+            return false;
+
+        for (int i = 0; i < EXTINF.length; i++) {
+            if (mBuffer.get(start + i) != EXTINF[i])
+                return false;
+        }
+        return true;
+    }
+
+    private int lineEnd(int start, int limit) {
+        int i = start;
+        while (i < limit && !isLineBreak(mBuffer.get(i)))
+            i++;
+        return i;
+    }
+
+    /**
+     * @return the start of the line after the break at end, "\r\n" is a single break
+     */
+    private int nextLine(int end, int limit) {
+        if (end >= limit)
+            return limit;
+        if (mBuffer.get(end) == '\r' && end + 1 < limit && mBuffer.get(end + 1) == '\n')
+            return end + 2;
+        return end + 1;
+    }
+
+    private static boolean isLineBreak(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Decodes the bytes into the char buffer, there are never more chars than bytes.
+     * @return the number of chars
+     */
+    private int decode(int start, int end) {
+        int length = end - start;
+        if (mChars.length < length)
+            mChars = new char[Math.max(length, mChars.length * 2)];
+
+        int i = 0;
+        for (; i < length; i++) {
+            byte b = mBuffer.get(start + i);
+            if (b < 0)
+                break;
+            mChars[i] = (char) b;
+        }
+        if (i == length)
+            return length; // plain ASCII
+
+        ByteBuffer in = mBuffer.duplicate();
+        in.limit(end);
+        in.position(start + i);
+        CharBuffer out = CharBuffer.wrap(mChars, i, mChars.length - i);
+        mDecoder.reset();
+        mDecoder.decode(in, out, true);
+        mDecoder.flush(out);
+        return out.position();
+    }
+}
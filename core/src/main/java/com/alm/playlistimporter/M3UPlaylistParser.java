@@ -0,0 +1,213 @@
+package com.alm.playlistimporter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import rx.Notification;
+import rx.Observable;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.functions.Func1;
+
+/**
+ * Created by A. Labay on 15/01/16.
+ * As part of the project Playlist Importer.
+ */
+public class M3UPlaylistParser extends PlaylistParser {
+
+    /**
+     * Bytes parsed by each task when a big buffer is split, files smaller than two chunks
+     * are parsed on the calling thread
+     */
+    static final int CHUNK_SIZE = 256 * 1024;
+
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    private final String mFileName;
+
+    public M3UPlaylistParser() {
+        this(null);
+    }
+
+    /**
+     * @param fileName name of the playlist file, its extension tells if it's UTF-8
+     */
+    public M3UPlaylistParser(String fileName) {
+        mFileName = fileName;
+    }
+
+    @Override
+    public String getName() {
+        return null;
+    }
+
+    @Override
+    public void parse(InputStream file, Subscriber<? super Track> subscriber) throws IOException {
+        M3UTokenizer tokenizer = new M3UTokenizer(PlaylistDecoder.open(file, mFileName),
+                new char[PlaylistDecoder.BUFFER_SIZE]);
+        int position = 0;
+        while (tokenizer.nextLine() && !subscriber.isUnsubscribed()) {
+            if (!tokenizer.startsWith("#EXTINF"))
+                continue; // header, comments and paths without info
+
+            try {
+                tokenizer.parseEntry();
+                String title = tokenizer.title();
+                String artist = tokenizer.artist();
+                int duration = tokenizer.duration();
+
+                tokenizer.nextLine();
+                Track track = new Track(-1, title, artist, tokenizer.line(), false);
+                track.duration = duration;
+                track.position = position++;
+                subscriber.onNext(track);
+            } catch (Exception ignored) {
+                // something failed in this item so skip it but continue parsing the playlist
+            }
+        }
+    }
+
+    /**
+     * Only UTF-8 and Latin-1 files are parsed from the buffer, the lines of other charsets
+     * can't be found without decoding the whole file.
+     *
+     * Big files are split in chunks that start at an entry and are parsed in parallel on the
+     * computation scheduler. The entries are still emitted in order on the calling thread.
+     */
+    @Override
+    public boolean parse(ByteBuffer file, Subscriber<? super Track> subscriber) {
+        byte[] sample = new byte[Math.min(file.remaining(), PlaylistDecoder.SAMPLE_SIZE)];
+        file.duplicate().get(sample);
+
+        Charset charset = PlaylistDecoder.detect(sample, sample.length, mFileName);
+        if (!PlaylistDecoder.isAsciiCompatible(charset))
+            return false;
+
+        int start = file.position() + PlaylistDecoder.bomLength(sample, sample.length);
+        if (PROCESSORS < 2 || file.limit() - start < 2 * CHUNK_SIZE)
+            new M3UBufferParser(file, charset).parse(start, file.limit(), 0, subscriber);
+        else
+            parseChunks(file, charset, start, subscriber);
+        return true;
+    }
+
+    /**
+     * Parses from start to the limit of the file in chunks, whatever its size.
+     */
+    void parseChunks(final ByteBuffer file, final Charset charset, int start,
+                     Subscriber<? super Track> subscriber) {
+        M3UBufferParser aligner = new M3UBufferParser(file.duplicate(), charset);
+        final List<Integer> bounds = new ArrayList<>();
+        bounds.add(start);
+        int bound = start;
+        while (bound < file.limit()) {
+            bound = aligner.alignToEntry(bound + CHUNK_SIZE);
+            bounds.add(bound);
+        }
+
+        ChunkPull chunks = new ChunkPull();
+        OrderedParallel.map(Observable.range(0, bounds.size() - 1), new Func1<Integer, Chunk>() {
+                    @Override
+                    public Chunk call(Integer i) {
+                        return new Chunk(file.duplicate(), charset, bounds.get(i), bounds.get(i + 1));
+                    }
+                }, PROCESSORS)
+                .subscribe(chunks);
+
+        // the subscriber may make this thread wait, never a computation one
+        try {
+            int position = 0;
+            Chunk chunk;
+            while (!subscriber.isUnsubscribed() && (chunk = chunks.take()) != null) {
+                for (Track track : chunk.tracks) {
+                    track.position += position;
+                    subscriber.onNext(track);
+                }
+                position += chunk.tracks.size();
+                file.position(chunk.end);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            chunks.unsubscribe();
+        }
+    }
+
+    /**
+     * Requests the parsed chunks one by one as they are emitted, so only the few that
+     * {@link OrderedParallel} parses ahead are held, whatever the size of the file. A blocking
+     * iterator would request a whole ring buffer of them.
+     */
+    private static class ChunkPull extends Subscriber<Chunk> {
+
+        private final BlockingQueue<Notification<Chunk>> mQueue = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onStart() {
+            request(1);
+        }
+
+        @Override
+        public void onCompleted() {
+            mQueue.offer(Notification.<Chunk>createOnCompleted());
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            mQueue.offer(Notification.<Chunk>createOnError(e));
+        }
+
+        @Override
+        public void onNext(Chunk chunk) {
+            mQueue.offer(Notification.createOnNext(chunk));
+        }
+
+        /**
+         * Waits for the next chunk and requests the one after it.
+         * @return null once every chunk has been taken
+         */
+        Chunk take() throws InterruptedException {
+            Notification<Chunk> notification = mQueue.take();
+            if (notification.isOnError())
+                throw Exceptions.propagate(notification.getThrowable());
+            if (notification.isOnCompleted())
+                return null;
+
+            request(1);
+            return notification.getValue();
+        }
+    }
+
+    /**
+     * Entries of a part of the file, their positions start from 0
+     */
+    private static class Chunk {
+
+        final List<Track> tracks = new ArrayList<>();
+        final int end;
+
+        Chunk(ByteBuffer file, Charset charset, int start, int end) {
+            this.end = end;
+            new M3UBufferParser(file, charset).parse(start, end, 0, new Subscriber<Track>() {
+                @Override
+                public void onCompleted() {
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                }
+
+                @Override
+                public void onNext(Track track) {
+                    tracks.add(track);
+                }
+            });
+        }
+    }
+}
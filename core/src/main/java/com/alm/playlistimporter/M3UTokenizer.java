@@ -0,0 +1,265 @@
+package com.alm.playlistimporter;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Reads an M3U playlist line by line into a reusable buffer. The fields of an
+ * <code>#EXTINF:&lt;duration&gt;,&lt;title&gt; - &lt;artist&gt;</code> line are found in a single
+ * scan and kept as offsets, strings are only created for the fields that are asked for.
+ */
+public class M3UTokenizer {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader mReader;
+    private final char[] mBuffer;
+    private int mPos = 0, mLimit = 0;
+    private boolean mSkipLF = false;
+
+    private char[] mLine = new char[256];
+    private int mLength = -1;
+
+    // fields of the current #EXTINF line
+    private int mDuration;
+    private int mTitleStart, mTitleEnd, mArtistStart, mArtistEnd;
+    private boolean mTrim;
+
+    public M3UTokenizer(Reader reader) {
+        this(reader, new char[BUFFER_SIZE]);
+    }
+
+    /**
+     * Tokenizer without a reader, lines are given with {@link #setLine(char[], int)}.
+     */
+    public M3UTokenizer() {
+        this(null, new char[0]);
+    }
+
+    /**
+     * @param buffer read buffer, it can be reused once the tokenizer is done
+     */
+    public M3UTokenizer(Reader reader, char[] buffer) {
+        mReader = reader;
+        mBuffer = buffer;
+    }
+
+    /**
+     * Reads the next line, ending with '\n', '\r' or "\r\n", into the line buffer.
+     * @return false at the end of the stream
+     */
+    public boolean nextLine() throws IOException {
+        mLength = 0;
+        boolean read = false;
+        while (true) {
+            if (mPos == mLimit) {
+                mLimit = mReader.read(mBuffer, 0, mBuffer.length);
+                mPos = 0;
+                if (mLimit <= 0) {
+                    mLimit = 0;
+                    if (!read)
+                        mLength = -1;
+                    return read;
+                }
+            }
+
+            char c = mBuffer[mPos++];
+            if (mSkipLF) {
+                mSkipLF = false;
+                if (c == '\n')
+                    continue;
+            }
+
+            read = true;
+            if (c == '\n')
+                return true;
+            if (c == '\r') {
+                mSkipLF = true;
+                return true;
+            }
+
+            if (mLength == mLine.length) {
+                char[] line = new char[mLength * 2];
+                System.arraycopy(mLine, 0, line, 0, mLength);
+                mLine = line;
+            }
+            mLine[mLength++] = c;
+        }
+    }
+
+    /**
+     * Makes the chars the current line, for lines found without this tokenizer reading them.
+     */
+    public void setLine(char[] chars, int length) {
+        if (mLine.length < length)
+            mLine = new char[Math.max(length, mLine.length * 2)];
+        System.arraycopy(chars, 0, mLine, 0, length);
+        mLength = length;
+    }
+
+    public boolean startsWith(String prefix) {
+        if (mLength < prefix.length())
+            return false;
+
+        for (int i = 0; i < prefix.length(); i++) {
+            if (mLine[i] != prefix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the current line, null at the end of the stream
+     */
+    public String line() {
+        return mLength < 0 ? null : new String(mLine, 0, mLength);
+    }
+
+    /**
+     * Splits the current line as an <code>#EXTINF</code> entry, call it before reading the fields.
+     */
+    public void parseEntry() {
+        int comma = indexOf(',', 0);
+        mDuration = parseDuration(comma < 0 ? mLength : comma);
+        splitTrackKey(comma + 1, mLength);
+    }
+
+    /**
+     * @return the duration in seconds or -1 if it's unknown
+     */
+    public int duration() {
+        return mDuration;
+    }
+
+    public String title() {
+        return field(mTitleStart, mTitleEnd);
+    }
+
+    public String artist() {
+        return field(mArtistStart, mArtistEnd);
+    }
+
+    private int indexOf(char c, int from) {
+        for (int i = from; i < mLength; i++) {
+            if (mLine[i] == c)
+                return i;
+        }
+        return -1;
+    }
+
+    private int parseDuration(int end) {
+        int i = "#EXTINF:".length();
+        if (i >= end)
+            return -1;
+
+        boolean negative = mLine[i] == '-';
+        if (negative)
+            i++;
+
+        int value = 0, digits = 0;
+        for (; i < end; i++) {
+            char c = mLine[i];
+            if (c < '0' || c > '9')
+                break;
+            value = value * 10 + (c - '0');
+            digits++;
+        }
+
+        if (digits == 0 || negative)
+            return -1;
+        return value;
+    }
+
+    /**
+     * Title and artist are separated by a dash:
+     * - one dash: split there, both sides trimmed
+     * - two dashes: split at the last one, both sides trimmed
+     * - otherwise: the dash separated parts are joined without dashes, the first half plus one
+     *   is the title and the rest the artist, without trimming
+     */
+    private void splitTrackKey(int start, int end) {
+        while (start < end && mLine[start] <= ' ')
+            start++;
+        while (end > start && mLine[end - 1] <= ' ')
+            end--;
+
+        int dashes = 0, firstDash = -1, lastDash = -1, lastChar = -1;
+        for (int i = start; i < end; i++) {
+            if (mLine[i] == '-') {
+                if (firstDash < 0)
+                    firstDash = i;
+                lastDash = i;
+                dashes++;
+            } else {
+                lastChar = i;
+            }
+        }
+
+        if (dashes == 1 || dashes == 2) {
+            mTrim = true;
+            mTitleStart = start;
+            mTitleEnd = dashes == 1 ? firstDash : lastDash;
+            mArtistStart = mTitleEnd + 1;
+            mArtistEnd = end;
+            return;
+        }
+
+        mTrim = false;
+
+        // empty parts at the end don't count
+        int parts = 0;
+        if (lastChar >= 0) {
+            parts = 1;
+            for (int i = start; i < lastChar; i++) {
+                if (mLine[i] == '-')
+                    parts++;
+            }
+        }
+
+        // the title ends at the dash after the part parts / 2
+        int titleEnd = lastChar + 1, seen = 0;
+        for (int i = start; i < lastChar; i++) {
+            if (mLine[i] == '-' && seen++ == parts / 2) {
+                titleEnd = i;
+                break;
+            }
+        }
+
+        mTitleStart = start;
+        mTitleEnd = Math.max(start, titleEnd);
+        mArtistStart = Math.min(mTitleEnd + 1, lastChar + 1);
+        mArtistEnd = lastChar + 1;
+        if (mArtistStart < mTitleEnd)
+            mArtistStart = mArtistEnd = mTitleEnd;
+    }
+
+    private String field(int start, int end) {
+        if (mTrim) {
+            while (start < end && mLine[start] <= ' ')
+                start++;
+            while (end > start && mLine[end - 1] <= ' ')
+                end--;
+            return new String(mLine, start, end - start);
+        }
+
+        // joined parts, dashes removed
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (mLine[i] != '-')
+                count++;
+        }
+        if (count == end - start)
+            return new String(mLine, start, count);
+
+        char[] chars = new char[count];
+        int j = 0;
+        for (int i = start; i < end; i++) {
+            if (mLine[i] != '-')
+                chars[j++] = mLine[i];
+        }
+        return new String(chars);
+    }
+}
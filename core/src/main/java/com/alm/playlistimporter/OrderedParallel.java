@@ -0,0 +1,68 @@
+package com.alm.playlistimporter;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+import rx.subjects.AsyncSubject;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Maps items on a scheduler, the computation one unless told otherwise, several at a time,
+ * and emits the results in the order of the items. Unlike concatMapEager, which subscribes to every item at once, only
+ * a few groups of items are taken ahead of the subscriber, so a slow one paces the source.
+ */
+public class OrderedParallel {
+
+    /**
+     * @param concurrency items mapped at the same time, up to twice as many are taken ahead
+     */
+    public static <T, R> Observable<R> map(Observable<T> items, Func1<? super T, ? extends R> func,
+                                           int concurrency) {
+        return map(items, func, concurrency, Schedulers.computation());
+    }
+
+    /**
+     * @param scheduler where the items are mapped, blocking functions need one of their own
+     */
+    public static <T, R> Observable<R> map(Observable<T> items, final Func1<? super T, ? extends R> func,
+                                           int concurrency, final Scheduler scheduler) {
+        return items
+                .map(new Func1<T, Observable<R>>() {
+                    @Override
+                    public Observable<R> call(T item) {
+                        return start(func, item, scheduler);
+                    }
+                })
+                .buffer(concurrency)
+                .concatMap(new Func1<List<Observable<R>>, Observable<R>>() {
+                    @Override
+                    public Observable<R> call(List<Observable<R>> results) {
+                        return Observable.concat(Observable.from(results));
+                    }
+                });
+    }
+
+    /**
+     * @return the result of the item, it's computed whether it's subscribed or not
+     */
+    private static <T, R> Observable<R> start(final Func1<? super T, ? extends R> func, final T item,
+                                              Scheduler scheduler) {
+        AsyncSubject<R> result = AsyncSubject.create();
+        Observable
+                .fromCallable(new Callable<R>() {
+                    @Override
+                    public R call() throws Exception {
+                        return func.call(item);
+                    }
+                })
+                .subscribeOn(scheduler)
+                .subscribe(result);
+        return result;
+    }
+}
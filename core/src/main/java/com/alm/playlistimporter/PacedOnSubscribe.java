@@ -0,0 +1,108 @@
+package com.alm.playlistimporter;
+
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Source for synchronous push loops, like the playlist parsers, that follows the demand of
+ * the subscriber: every item waits on the emitting thread until the subscriber has requested
+ * it, so the loop doesn't need to become a pull parser.
+ *
+ * The subscribing thread waits while there's no demand, so it must not be the main thread.
+ * Don't use subscribeOn right on the observable, or anywhere below it while it's still
+ * emitting: that operator hands every request to the thread it subscribed on, the same one
+ * that waits for them.
+ */
+public abstract class PacedOnSubscribe<T> implements Observable.OnSubscribe<T> {
+
+    @Override
+    public final void call(Subscriber<? super T> child) {
+        emit(paced(child));
+    }
+
+    /**
+     * Emits every item to the subscriber, which only returns from onNext once the item has
+     * been requested. It's unsubscribed with the child.
+     */
+    protected abstract void emit(Subscriber<T> subscriber);
+
+    private static <T> Subscriber<T> paced(final Subscriber<? super T> child) {
+        final Demand demand = new Demand();
+        child.setProducer(demand);
+
+        final Subscriber<T> subscriber = new Subscriber<T>() {
+            @Override
+            public void onCompleted() {
+                child.onCompleted();
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                child.onError(e);
+            }
+
+            @Override
+            public void onNext(T item) {
+                if (demand.take(this))
+                    child.onNext(item);
+            }
+        };
+        child.add(subscriber);
+        child.add(Subscriptions.create(new Action0() {
+            @Override
+            public void call() {
+                demand.wake();
+            }
+        }));
+
+        return subscriber;
+    }
+
+    /**
+     * Items requested by the subscriber and not emitted yet.
+     */
+    private static class Demand implements Producer {
+
+        private long mRequested = 0;
+
+        @Override
+        public synchronized void request(long n) {
+            if (n <= 0)
+                return;
+
+            mRequested = mRequested + n < 0 ? Long.MAX_VALUE : mRequested + n;
+            notifyAll();
+        }
+
+        /**
+         * Waits until one more item is requested and counts it as emitted.
+         * @return false if the subscriber has unsubscribed or the thread was interrupted
+         */
+        synchronized boolean take(Subscriber<?> subscriber) {
+            try {
+                while (mRequested == 0 && !subscriber.isUnsubscribed())
+                    wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+
+            if (subscriber.isUnsubscribed())
+                return false;
+
+            if (mRequested != Long.MAX_VALUE)
+                mRequested--;
+            return true;
+        }
+
+        synchronized void wake() {
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.alm.playlistimporter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Library file paths indexed by their components in reverse: file name, folder, parent
+ * folder... A path written in a playlist matches the track that shares the longest suffix
+ * with it, so "Album/01 - Intro.mp3" tells apart the intros of different albums even when
+ * the root folders of the computer and the device are not the same.
+ *
+ * A node only has children once two tracks end with the same components, most of the
+ * library stays as one node per file name. A track whose whole path is the suffix of another
+ * one's stays in the node where its path ends.
+ */
+class PathTrie {
+
+    /**
+     * Marks a node shared by more than one track, one more component is needed to match.
+     */
+    private static final Track AMBIGUOUS = new Track(-1, null, null);
+
+    private static class Node {
+
+        /**
+         * The only track below this node, or {@link #AMBIGUOUS}
+         */
+        Track track;
+
+        /**
+         * Only set once the node is ambiguous
+         */
+        HashMap<String, Node> children;
+
+        /**
+         * The track whose path ends at this node, if the node is ambiguous, or
+         * {@link #AMBIGUOUS} if there's more than one with the same path
+         */
+        Track terminal;
+    }
+
+    private final HashMap<String, Node> mByName;
+
+    PathTrie(int capacity) {
+        mByName = new HashMap<>(capacity);
+    }
+
+    /**
+     * @param t the library track, its uri must be the path of the file
+     */
+    void add(Track t) {
+        String[] components = components(t.uri);
+        if (components.length == 0)
+            return;
+
+        Node node = mByName.get(components[0]);
+        if (node == null) {
+            node = new Node();
+            node.track = t;
+            mByName.put(components[0], node);
+            return;
+        }
+
+        for (int depth = 0; ; depth++) {
+            if (node.track != AMBIGUOUS) {
+                if (node.track.id == t.id)
+                    return; // the same file twice
+
+                // split the node, the track it had goes one level down
+                Track old = node.track;
+                node.track = AMBIGUOUS;
+                node.children = new HashMap<>(4);
+                String[] oldComponents = components(old.uri);
+                if (depth + 1 < oldComponents.length)
+                    child(node, oldComponents[depth + 1], old);
+                else
+                    node.terminal = old;
+            }
+
+            if (depth + 1 >= components.length) {
+                // the path is the suffix of another one
+                if (node.terminal == null)
+                    node.terminal = t;
+                else if (node.terminal != AMBIGUOUS && node.terminal.id != t.id)
+                    node.terminal = AMBIGUOUS;
+                return;
+            }
+
+            Node next = node.children.get(components[depth + 1]);
+            if (next == null) {
+                child(node, components[depth + 1], t);
+                return;
+            }
+            node = next;
+        }
+    }
+
+    private static void child(Node parent, String component, Track t) {
+        Node child = new Node();
+        child.track = t;
+        parent.children.put(component, child);
+    }
+
+    /**
+     * Walks the components of the path from the file name until a single track is left.
+     * @param path path of the track as written in the playlist
+     * @return the only track with the longest suffix in common, the one whose whole path is
+     * that suffix if there are several, or null if there's none or the path doesn't tell
+     * apart several of them
+     */
+    Track find(String path) {
+        Node node = walk(path);
+        if (node == null)
+            return null;
+        if (node.track != AMBIGUOUS)
+            return node.track;
+        return node.terminal != AMBIGUOUS ? node.terminal : null;
+    }
+
+    /**
+     * Adds every track with the longest suffix in common with the path.
+     * @param path path of the track as written in the playlist
+     */
+    void candidates(String path, List<Track> out) {
+        Node node = walk(path);
+        if (node != null)
+            collect(node, out);
+    }
+
+    private static void collect(Node node, List<Track> out) {
+        if (node.track != AMBIGUOUS) {
+            out.add(node.track);
+            return;
+        }
+
+        if (node.terminal != null && node.terminal != AMBIGUOUS)
+            out.add(node.terminal);
+        for (Node child : node.children.values())
+            collect(child, out);
+    }
+
+    /**
+     * @return the node of the longest suffix of the path in the trie, null if not even
+     * the file name is there
+     */
+    private Node walk(String path) {
+        if (path == null)
+            return null;
+
+        int end = path.length();
+        Node node = null;
+        HashMap<String, Node> children = mByName;
+        while (children != null) {
+            while (end > 0 && isSeparator(path.charAt(end - 1)))
+                end--;
+
+            int start = end;
+            while (start > 0 && !isSeparator(path.charAt(start - 1)))
+                start--;
+
+            if (start == end)
+                break;
+
+            Node next = children.get(key(path.substring(start, end)));
+            if (next == null)
+                break;
+
+            node = next;
+            children = node.children;
+            end = start;
+        }
+
+        return node;
+    }
+
+    /**
+     * @return the components of the path in reverse order, file name first
+     */
+    private static String[] components(String path) {
+        if (path == null)
+            return new String[0];
+
+        String[] parts = path.split("[/\\\\]+");
+        int count = 0;
+        for (String part : parts) {
+            if (!part.isEmpty())
+                count++;
+        }
+
+        String[] components = new String[count];
+        for (String part : parts) {
+            if (!part.isEmpty())
+                components[--count] = key(part);
+        }
+        return components;
+    }
+
+    private static String key(String component) {
+        return component.toLowerCase(Locale.US);
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '/' || c == '\\';
+    }
+}
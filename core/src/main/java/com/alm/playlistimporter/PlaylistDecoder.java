@@ -0,0 +1,146 @@
+package com.alm.playlistimporter;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Opens the text of a playlist file with the right charset. A byte order mark wins, then the
+ * extension (<code>.m3u8</code> is always UTF-8) and at last a sample of the first bytes: if
+ * they aren't valid UTF-8 the file is taken as Windows Latin-1, like the ones iTunes for
+ * Windows writes.
+ */
+public class PlaylistDecoder {
+
+    /**
+     * Bytes read from the file at once, big enough for the decoder to work in few large steps
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Bytes of the beginning of the file looked at to guess the charset
+     */
+    public static final int SAMPLE_SIZE = 8 * 1024;
+
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset UTF_16BE = Charset.forName("UTF-16BE");
+    private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+    private static final Charset LATIN_1 = Charset.isSupported("windows-1252")
+            ? Charset.forName("windows-1252") : Charset.forName("ISO-8859-1");
+
+    /**
+     * @param name file name, only its extension is used, it can be null
+     */
+    public static Reader open(InputStream in, String name) throws IOException {
+        BufferedInputStream stream = new BufferedInputStream(in, BUFFER_SIZE);
+        stream.mark(SAMPLE_SIZE);
+        byte[] sample = new byte[SAMPLE_SIZE];
+        int length = 0, read;
+        while (length < sample.length && (read = stream.read(sample, length, sample.length - length)) > 0)
+            length += read;
+        stream.reset();
+
+        Charset charset = detect(sample, length, name);
+        int bom = bomLength(sample, length);
+
+        long skipped = 0;
+        while (skipped < bom)
+            skipped += stream.skip(bom - skipped);
+
+        return new InputStreamReader(stream, charset);
+    }
+
+    /**
+     * @param sample first bytes of the file
+     * @param name file name, only its extension is used, it can be null
+     * @return the charset the file is written in
+     */
+    public static Charset detect(byte[] sample, int length, String name) {
+        if (startsWith(sample, length, 0xEF, 0xBB, 0xBF))
+            return UTF_8;
+        if (startsWith(sample, length, 0xFE, 0xFF))
+            return UTF_16BE;
+        if (startsWith(sample, length, 0xFF, 0xFE))
+            return UTF_16LE;
+        if (name != null && name.toLowerCase(Locale.US).endsWith(".m3u8"))
+            return UTF_8;
+
+        return isUtf8(sample, length) ? UTF_8 : LATIN_1;
+    }
+
+    /**
+     * @return the length of the byte order mark the sample starts with, 0 if there's none
+     */
+    public static int bomLength(byte[] sample, int length) {
+        if (startsWith(sample, length, 0xEF, 0xBB, 0xBF))
+            return 3;
+        if (startsWith(sample, length, 0xFE, 0xFF) || startsWith(sample, length, 0xFF, 0xFE))
+            return 2;
+        return 0;
+    }
+
+    /**
+     * @return true if ASCII chars, line breaks included, are single bytes with the same value
+     * in the charset, so lines can be found without decoding
+     */
+    public static boolean isAsciiCompatible(Charset charset) {
+        return charset == UTF_8 || charset == LATIN_1;
+    }
+
+    private static boolean startsWith(byte[] sample, int length, int... prefix) {
+        if (length < prefix.length)
+            return false;
+
+        for (int i = 0; i < prefix.length; i++) {
+            if ((sample[i] & 0xFF) != prefix[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the bytes are valid UTF-8, a sequence cut by the end of the sample is
+     * accepted if the sample is a full {@link #SAMPLE_SIZE}, otherwise the file ends there.
+     * Plain ASCII is valid too.
+     */
+    static boolean isUtf8(byte[] bytes, int length) {
+        int i = 0;
+        while (i < length) {
+            int c = bytes[i] & 0xFF;
+            int following;
+            if (c < 0x80) {
+                i++;
+                continue;
+            } else if (c >= 0xC2 && c <= 0xDF) {
+                following = 1;
+            } else if (c >= 0xE0 && c <= 0xEF) {
+                following = 2;
+            } else if (c >= 0xF0 && c <= 0xF4) {
+                following = 3;
+            } else {
+                return false;
+            }
+
+            int end = i + 1 + following;
+            if (end > length) {
+                if (length < SAMPLE_SIZE)
+                    return false;
+                end = length;
+            }
+            for (int j = i + 1; j < end; j++) {
+                if ((bytes[j] & 0xC0) != 0x80)
+                    return false;
+            }
+            i = end;
+        }
+
+        return true;
+    }
+}
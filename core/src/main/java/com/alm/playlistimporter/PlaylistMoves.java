@@ -0,0 +1,105 @@
+package com.alm.playlistimporter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Fewest moves that put the members of a playlist in the order of the file. The members
+ * whose play orders already increase along the file, the longest run of them, stay where
+ * they are and every other one is moved once, right after the member that goes before it.
+ */
+public class PlaylistMoves {
+
+    /**
+     * Moves the member at index from of the playlist so it ends at index to, both counting
+     * the members sorted by play order, like {@code Playlists.Members.moveItem}.
+     */
+    public interface Mover {
+
+        boolean move(int from, int to);
+    }
+
+    /**
+     * @param orders current play orders of the members, in the order of the file, all distinct
+     * @return which members stay where they are
+     */
+    public static boolean[] kept(int[] orders, int count) {
+        // tails[k] is the member ending the lowest increasing run of length k + 1 found so far
+        int[] tails = new int[count], previous = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int low = 0, high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (orders[tails[mid]] < orders[i])
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length)
+                length++;
+        }
+
+        boolean[] kept = new boolean[count];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i])
+            kept[i] = true;
+        return kept;
+    }
+
+    /**
+     * @return how many members {@link #apply} would move
+     */
+    public static int count(boolean[] kept) {
+        int moves = 0;
+        for (boolean k : kept) {
+            if (!k)
+                moves++;
+        }
+        return moves;
+    }
+
+    /**
+     * Moves every member not kept, in the order of the file.
+     * @param orders current play orders of the members, in the order of the file, all distinct
+     * @return the number of moves made, or -1 if one failed and the rest were left
+     */
+    public static int apply(final int[] orders, int count, boolean[] kept, Mover mover) {
+        Integer[] byOrder = new Integer[count];
+        for (int i = 0; i < count; i++)
+            byOrder[i] = i;
+        Arrays.sort(byOrder, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return orders[a] < orders[b] ? -1 : orders[a] == orders[b] ? 0 : 1;
+            }
+        });
+
+        // positions in the file of the members, as they are in the playlist
+        List<Integer> current = new ArrayList<>(Arrays.asList(byOrder));
+        int moves = 0;
+        for (int i = 0; i < count; i++) {
+            if (kept[i])
+                continue;
+
+            int from = current.indexOf(i);
+            int after = i == 0 ? -1 : current.indexOf(i - 1);
+            int to = from > after ? after + 1 : after;
+            if (from == to)
+                continue;
+
+            if (!mover.move(from, to))
+                return -1;
+            current.add(to, current.remove(from));
+            moves++;
+        }
+        return moves;
+    }
+}
@@ -0,0 +1,39 @@
+package com.alm.playlistimporter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import rx.Subscriber;
+
+/**
+ * Created by A. Labay on 15/01/16.
+ * As part of the project Playlist Importer.
+ */
+public abstract class PlaylistParser {
+
+    /**
+     * Parses the playlist and emits every entry unresolved, with its position set. Positions
+     * go from 0 without gaps, but the entries don't have to be emitted in that order.
+     * @param file the playlist
+     */
+    public abstract void parse(InputStream file, Subscriber<? super Track> subscriber) throws IOException;
+
+    /**
+     * Parses the playlist from the whole file in memory, usually mapped. The position of the
+     * buffer moves forward while parsing.
+     * @return false if this parser can't read the file from a buffer, nothing is emitted then
+     * and the file has to be parsed as a stream
+     */
+    public boolean parse(ByteBuffer file, Subscriber<? super Track> subscriber) {
+        return false;
+    }
+
+
+    /**
+     * @return the playlist name
+     *
+     * Call this after the {@link #parse(InputStream, Subscriber)}}} has finished
+     */
+    public abstract String getName();
+}
@@ -0,0 +1,99 @@
+package com.alm.playlistimporter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Learns, while a playlist is matched, where the music folder of the computer it was written
+ * on is on the device: <code>C:\Music\</code> for <code>/storage/emulated/0/Music/</code>.
+ * Once a few matches agree, the rest of the paths are rewritten and found with a single
+ * lookup of the whole path in the {@link LibraryIndex}.
+ *
+ * One instance per playlist, it's safe to use from several threads.
+ */
+public class RootMapping {
+
+    /**
+     * Matches that must agree on the same roots before they are used
+     */
+    static final int CONFIDENT_MATCHES = 3;
+
+    private static class Root {
+
+        final String from, to;
+
+        Root(String from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private final HashMap<String, Integer> mCandidates = new HashMap<>();
+    private volatile List<Root> mRoots = new ArrayList<>();
+
+    /**
+     * @param path path of the track as written in the playlist
+     * @return the track at the rewritten path, or null if the path isn't under a learned root
+     * or there's no track there
+     */
+    public Track find(LibraryIndex library, String path) {
+        String key = LibraryIndex.pathKey(path);
+        if (key == null)
+            return null;
+
+        for (Root root : mRoots) {
+            if (key.startsWith(root.from))
+                return library.findByPath(root.to + key.substring(root.from.length()));
+        }
+        return null;
+    }
+
+    /**
+     * @param path path of the track as written in the playlist
+     * @param libraryPath path of the library track it matched
+     */
+    public void learn(String path, String libraryPath) {
+        String from = LibraryIndex.pathKey(path);
+        String to = LibraryIndex.pathKey(libraryPath);
+        if (from == null || to == null)
+            return;
+
+        // the roots are what's left before the common suffix, made of whole folders
+        int i = from.length(), j = to.length();
+        while (i > 0 && j > 0 && from.charAt(i - 1) == to.charAt(j - 1)) {
+            i--;
+            j--;
+        }
+        while (i < from.length() && from.charAt(i) != '/') {
+            i++;
+            j++;
+        }
+        if (i == from.length())
+            return; // not even the file name is the same
+
+        learn(new Root(from.substring(0, i + 1), to.substring(0, j + 1)));
+    }
+
+    private synchronized void learn(Root root) {
+        for (Root known : mRoots) {
+            if (root.from.startsWith(known.from))
+                return;
+        }
+
+        String candidate = root.from + '\u0000' + root.to;
+        Integer count = mCandidates.get(candidate);
+        count = count == null ? 1 : count + 1;
+        mCandidates.put(candidate, count);
+
+        if (count >= CONFIDENT_MATCHES) {
+            List<Root> roots = new ArrayList<>(mRoots);
+            roots.add(root);
+            mRoots = roots;
+            mCandidates.clear();
+        }
+    }
+}
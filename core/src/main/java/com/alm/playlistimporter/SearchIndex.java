@@ -0,0 +1,197 @@
+package com.alm.playlistimporter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Infix search over the titles and artists of the library, loaded once.
+ *
+ * Every track is indexed by the trigrams of its normalized title and artist, a query only
+ * checks the tracks having all of its trigrams. Tracks are kept sorted by artist and title
+ * so the results come out sorted too.
+ */
+public class SearchIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final int[] mIds;
+    private final String[] mTitles, mArtists;
+    private final String[] mTitleKeys, mArtistKeys;
+    private final TrigramIndex mIndex = new TrigramIndex();
+
+    private SearchIndex(List<Track> tracks) {
+        int size = tracks.size();
+        mIds = new int[size];
+        mTitles = new String[size];
+        mArtists = new String[size];
+        mTitleKeys = new String[size];
+        mArtistKeys = new String[size];
+
+        for (int doc = 0; doc < size; doc++) {
+            Track t = tracks.get(doc);
+            mIds[doc] = t.id;
+            mTitles[doc] = t.title;
+            mArtists[doc] = t.artist;
+            mTitleKeys[doc] = TextKeys.normalize(t.title, false);
+            mArtistKeys[doc] = TextKeys.normalize(t.artist, false);
+
+            mIndex.add(doc, TrigramIndex.trigrams(mTitleKeys[doc] + '\n' + mArtistKeys[doc]));
+        }
+        mIndex.build();
+    }
+
+    /**
+     * Reads the whole library into a new index.
+     */
+    public static SearchIndex load(LibrarySource source) {
+        final List<Track> tracks = new ArrayList<>(Math.max(16, source.size()));
+        source.read(new LibrarySource.Visitor() {
+            @Override
+            public void visit(Track track, String titleKey, String artistKey) {
+                tracks.add(track);
+            }
+        });
+
+        Collections.sort(tracks, new Comparator<Track>() {
+            @Override
+            public int compare(Track a, Track b) {
+                int c = compareNullable(a.artist, b.artist);
+                return c != 0 ? c : compareNullable(a.title, b.title);
+            }
+        });
+
+        return new SearchIndex(tracks);
+    }
+
+    private static int compareNullable(String a, String b) {
+        if (a == null)
+            return b == null ? 0 : -1;
+        if (b == null)
+            return 1;
+        return String.CASE_INSENSITIVE_ORDER.compare(a, b);
+    }
+
+    private static boolean equalsNullable(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    public int size() {
+        return mIds.length;
+    }
+
+    /**
+     * @return the tracks whose title or artist contains the query, sorted by artist and title
+     */
+    public Results search(String query) {
+        String key = TextKeys.normalize(query, false);
+        if (key.isEmpty())
+            return new Results(EMPTY);
+
+        long[] grams = TrigramIndex.trigrams(key);
+        int[] candidates = null;
+        if (grams.length > 0) {
+            int[][] postings = new int[grams.length][];
+            for (int i = 0; i < grams.length; i++) {
+                postings[i] = mIndex.get(grams[i]);
+                if (postings[i] == null)
+                    return new Results(EMPTY);
+            }
+
+            // the shortest first, so the intersection is small from the start
+            Arrays.sort(postings, new Comparator<int[]>() {
+                @Override
+                public int compare(int[] a, int[] b) {
+                    return a.length - b.length;
+                }
+            });
+
+            candidates = postings[0];
+            for (int i = 1; i < postings.length && candidates.length > 0; i++)
+                candidates = intersect(candidates, postings[i]);
+        }
+
+        // the trigrams can come from both fields, or the query is too short to have any
+        int count = candidates != null ? candidates.length : mIds.length;
+        int[] docs = new int[count];
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            int doc = candidates != null ? candidates[i] : i;
+            if (mTitleKeys[doc].contains(key) || mArtistKeys[doc].contains(key))
+                docs[found++] = doc;
+        }
+
+        return new Results(Arrays.copyOf(docs, found));
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Matching tracks of a search, only built when they are asked for.
+     */
+    public class Results {
+
+        private final int[] mDocs;
+
+        private Results(int[] docs) {
+            mDocs = docs;
+        }
+
+        public int size() {
+            return mDocs.length;
+        }
+
+        /**
+         * @return a new track for the result at the position
+         */
+        public Track get(int position) {
+            int doc = mDocs[position];
+            return new Track(mIds[doc], mTitles[doc], mArtists[doc]);
+        }
+
+        /**
+         * @return the id of the track at the position, without building it
+         */
+        public int getId(int position) {
+            return mIds[mDocs[position]];
+        }
+
+        /**
+         * @return true if the track at the position has the same title and artist as the one
+         * at otherPosition of the other results, without building either
+         */
+        public boolean hasSameContents(int position, Results other, int otherPosition) {
+            int doc = mDocs[position], otherDoc = other.mDocs[otherPosition];
+            SearchIndex otherIndex = other.getIndex();
+            if (otherIndex == SearchIndex.this)
+                return doc == otherDoc;
+
+            return equalsNullable(mTitles[doc], otherIndex.mTitles[otherDoc])
+                    && equalsNullable(mArtists[doc], otherIndex.mArtists[otherDoc]);
+        }
+
+        private SearchIndex getIndex() {
+            return SearchIndex.this;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.alm.playlistimporter;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Normalization of titles and artists for approximate matching and searching.
+ */
+public final class TextKeys {
+
+    private TextKeys() {
+    }
+
+    /**
+     * @param stripFeaturing drop everything from a "feat", "ft" or "featuring" word on
+     * @return lower case letters and digits separated by single spaces, without accents
+     */
+    public static String normalize(String s, boolean stripFeaturing) {
+        if (s == null)
+            return "";
+
+        s = Normalizer.normalize(s.toLowerCase(Locale.US), Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(s.length());
+        int i = 0, n = s.length();
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(s.charAt(i)))
+                i++;
+            if (i == n)
+                break;
+
+            if (sb.length() > 0)
+                sb.append(' ');
+            int wordStart = sb.length();
+            for (; i < n; i++) {
+                char c = s.charAt(i);
+                if (Character.getType(c) == Character.NON_SPACING_MARK)
+                    continue; // accents, once decomposed
+                if (!Character.isLetterOrDigit(c))
+                    break;
+                sb.append(c);
+            }
+
+            if (stripFeaturing && isFeaturing(sb, wordStart)) {
+                sb.setLength(Math.max(0, wordStart - 1));
+                break;
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static boolean isFeaturing(StringBuilder sb, int start) {
+        int length = sb.length() - start;
+        if (length == 2)
+            return sb.charAt(start) == 'f' && sb.charAt(start + 1) == 't';
+        if (length == 4 || length == 9) {
+            String word = sb.substring(start);
+            return word.equals("feat") || word.equals("featuring");
+        }
+        return false;
+    }
+}
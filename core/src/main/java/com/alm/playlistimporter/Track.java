@@ -11,6 +11,21 @@ public class Track {
     public String title, artist;
     public String uri;
 
+    /**
+     * Index of the entry in the source playlist, used as its play order
+     */
+    public int position = -1;
+
+    /**
+     * Length in seconds as written in the source playlist, -1 if unknown
+     */
+    public int duration = -1;
+
+    /**
+     * Album as written in the source playlist or the library, null if unknown
+     */
+    public String album;
+
     public boolean isAdded;
 
     public Track(int id, String title, String artist) {
@@ -0,0 +1,82 @@
+package com.alm.playlistimporter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Inverted index from trigrams to the documents having them. Documents are numbered by
+ * whoever builds the index and must be added in increasing order, so every posting list
+ * is sorted.
+ */
+class TrigramIndex {
+
+    /**
+     * Growing posting lists, the first item of each one is its length
+     */
+    private HashMap<Long, int[]> mBuilding = new HashMap<>();
+    private HashMap<Long, int[]> mPostings;
+
+    /**
+     * @param grams the distinct trigrams of the document
+     */
+    void add(int doc, long[] grams) {
+        if (mPostings != null)
+            throw new IllegalStateException("Already built");
+
+        for (long gram : grams) {
+            int[] posting = mBuilding.get(gram);
+            if (posting == null) {
+                posting = new int[3];
+            } else if (posting[0] + 1 == posting.length) {
+                posting = Arrays.copyOf(posting, posting.length * 2);
+            }
+            posting[++posting[0]] = doc;
+            mBuilding.put(gram, posting);
+        }
+    }
+
+    /**
+     * Trims the posting lists, no document can be added afterwards.
+     */
+    void build() {
+        mPostings = new HashMap<>(mBuilding.size() * 2);
+        for (Map.Entry<Long, int[]> e : mBuilding.entrySet()) {
+            int[] posting = e.getValue();
+            mPostings.put(e.getKey(), Arrays.copyOfRange(posting, 1, posting[0] + 1));
+        }
+        mBuilding = null;
+    }
+
+    boolean isBuilt() {
+        return mPostings != null;
+    }
+
+    /**
+     * @return the sorted documents having the trigram, null if there's none
+     */
+    int[] get(long gram) {
+        return mPostings.get(gram);
+    }
+
+    /**
+     * @return the distinct trigrams of the string, sorted, three chars packed in a long
+     */
+    static long[] trigrams(String s) {
+        int count = Math.max(0, s.length() - 2);
+        long[] grams = new long[count];
+        for (int i = 0; i < count; i++)
+            grams[i] = (long) s.charAt(i) << 32 | (long) s.charAt(i + 1) << 16 | s.charAt(i + 2);
+
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || grams[i] != grams[i - 1])
+                grams[distinct++] = grams[i];
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+}
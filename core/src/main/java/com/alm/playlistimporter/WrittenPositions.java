@@ -0,0 +1,44 @@
+package com.alm.playlistimporter;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Created by A. Labay on 17/10/26.
+ * As part of the project Playlist Importer.
+ *
+ * Positions of the entries already written to a playlist, for checkpoints. Entries may be
+ * written in any order, only the positions before the first one missing are known to be done,
+ * so that's where an interrupted import has to continue from.
+ */
+public class WrittenPositions {
+
+    private final BitSet mWritten = new BitSet();
+    private int mNext;
+
+    /**
+     * @param from position of the first entry not written yet, every one before it is
+     */
+    public WrittenPositions(int from) {
+        mNext = from;
+    }
+
+    /**
+     * @param tracks entries just written, with their positions set
+     * @return the position of the first entry not written yet
+     */
+    public int add(List<Track> tracks) {
+        for (Track t : tracks)
+            mWritten.set(t.position);
+
+        mNext = mWritten.nextClearBit(mNext);
+        return mNext;
+    }
+
+    /**
+     * @return the position of the first entry not written yet, every one before it is
+     */
+    public int next() {
+        return mNext;
+    }
+}
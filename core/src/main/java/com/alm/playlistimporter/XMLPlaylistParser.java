@@ -0,0 +1,332 @@
+package com.alm.playlistimporter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import rx.Subscriber;
+
+/**
+ * Created by A. Labay on 15/01/16.
+ * As part of the project Playlist Importer.
+ *
+ * Streams an iTunes library or playlist export.
+ *
+ * The order of the playlist is only known at the end of the file, in the Playlists array,
+ * while the track details come first, in the Tracks dict. Instead of keeping the whole
+ * library in memory the file is read twice: the first pass only collects the track ids of
+ * the playlist and the ones the Tracks dict has, and the second one emits every track of
+ * the playlist as soon as its dict is parsed, once for each of its positions. Tracks come
+ * out in the order of the Tracks dict, not of the playlist.
+ */
+public class XMLPlaylistParser extends PlaylistParser {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Callable<InputStream> mReopen;
+
+    private String name;
+
+    /**
+     * @param reopen opens the file again for the second pass
+     */
+    public XMLPlaylistParser(Callable<InputStream> reopen) {
+        mReopen = reopen;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void parse(InputStream file, Subscriber<? super Track> subscriber) throws IOException {
+        try {
+            long[] items = readPlaylistItems(newParser(file));
+
+            InputStream tracks = mReopen.call();
+            if (tracks == null)
+                throw new IOException("Cannot open the file again");
+
+            try {
+                emitTracks(newParser(tracks), items, subscriber);
+            } finally {
+                tracks.close();
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private XmlPullParser newParser(InputStream file) throws XmlPullParserException {
+        XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+        parser.setInput(file, null);
+        return parser;
+    }
+
+    /**
+     * Moves the parser inside the top level dict and to the start of the value for the key.
+     * @return false if the key isn't in the document
+     */
+    private boolean moveToRootValue(XmlPullParser parser, String key) throws XmlPullParserException, IOException {
+        parser.nextTag();
+        parser.require(XmlPullParser.START_TAG, null, "plist");
+        parser.nextTag();
+        parser.require(XmlPullParser.START_TAG, null, "dict");
+
+        while (parser.nextTag() == XmlPullParser.START_TAG) {
+            String k = parser.nextText();
+            parser.nextTag();
+            if (key.equals(k))
+                return true;
+
+            skip(parser);
+        }
+
+        return false;
+    }
+
+    /**
+     * First pass, finds the first playlist which isn't the library itself nor one of the
+     * special ones created by iTunes.
+     * @return the items of the playlist as (track id << 32 | position) sorted by track id
+     * or null if there's no such playlist. Items missing from the Tracks dict are left out,
+     * without a gap in the positions.
+     */
+    private long[] readPlaylistItems(XmlPullParser parser) throws XmlPullParserException, IOException {
+        if (!moveToRootValue(parser, "Tracks"))
+            return null;
+
+        long[] tracks = readTrackIds(parser);
+
+        // the Playlists array comes right after, but don't count on it
+        while (parser.nextTag() == XmlPullParser.START_TAG) {
+            String key = parser.nextText();
+            parser.nextTag();
+            if (key.equals("Playlists"))
+                return readPlaylists(parser, tracks);
+
+            skip(parser);
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the keys of the Tracks dict, which are the track ids, sorted
+     */
+    private long[] readTrackIds(XmlPullParser parser) throws XmlPullParserException, IOException {
+        long[] ids = new long[256];
+        int count = 0;
+
+        while (parser.nextTag() == XmlPullParser.START_TAG) {
+            if (count == ids.length)
+                ids = Arrays.copyOf(ids, count * 2);
+            ids[count++] = Long.parseLong(parser.nextText().trim());
+            parser.nextTag();
+            skip(parser);
+        }
+
+        ids = Arrays.copyOf(ids, count);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private long[] readPlaylists(XmlPullParser parser, long[] tracks) throws XmlPullParserException, IOException {
+        while (parser.nextTag() == XmlPullParser.START_TAG) { // playlist dict
+            String playlistName = null;
+            boolean special = false;
+            long[] items = null;
+
+            while (parser.nextTag() == XmlPullParser.START_TAG) {
+                String key = parser.nextText();
+                parser.nextTag();
+                if (key.equals("Name")) {
+                    playlistName = parser.nextText();
+                } else if (key.equals("Master") || key.equals("Distinguished Kind")) {
+                    special = special || !parser.getName().equals("false");
+                    skip(parser);
+                } else if (key.equals("Playlist Items") && !special) {
+                    items = readItems(parser, tracks);
+                } else {
+                    skip(parser);
+                }
+            }
+
+            if (!special && items != null) {
+                name = playlistName;
+                return items;
+            }
+        }
+
+        return null;
+    }
+
+    private long[] readItems(XmlPullParser parser, long[] tracks) throws XmlPullParserException, IOException {
+        long[] items = new long[256];
+        int position = 0;
+
+        while (parser.nextTag() == XmlPullParser.START_TAG) { // item dict
+            while (parser.nextTag() == XmlPullParser.START_TAG) {
+                String key = parser.nextText();
+                parser.nextTag();
+                if (key.equals("Track ID")) {
+                    long id = Long.parseLong(parser.nextText().trim());
+                    if (Arrays.binarySearch(tracks, id) < 0)
+                        continue;
+
+                    if (position == items.length)
+                        items = Arrays.copyOf(items, position * 2);
+                    items[position] = id << 32 | position;
+                    position++;
+                } else {
+                    skip(parser);
+                }
+            }
+        }
+
+        items = Arrays.copyOf(items, position);
+        Arrays.sort(items);
+        return items;
+    }
+
+    /**
+     * Second pass, emits every track of the playlist once its dict is parsed. If there's no
+     * playlist every track of the Tracks dict is emitted in the order of the file.
+     */
+    private void emitTracks(XmlPullParser parser, long[] items, Subscriber<? super Track> subscriber)
+            throws XmlPullParserException, IOException {
+        if (!moveToRootValue(parser, "Tracks"))
+            return;
+
+        int position = 0;
+        while (parser.nextTag() == XmlPullParser.START_TAG) {
+            long id = Long.parseLong(parser.nextText().trim()); // the key, same as Track ID
+            parser.nextTag();
+
+            Track track = new Track(-1, null, null, null, false);
+            while (parser.nextTag() == XmlPullParser.START_TAG) {
+                String key = parser.nextText();
+                parser.nextTag();
+                switch (key) {
+                    case "Name":
+                        track.title = parser.nextText();
+                        break;
+                    case "Artist":
+                        track.artist = parser.nextText();
+                        break;
+                    case "Album":
+                        track.album = parser.nextText();
+                        break;
+                    case "Total Time":
+                        track.duration = (int) ((Long.parseLong(parser.nextText().trim()) + 500) / 1000);
+                        break;
+                    case "Location":
+                        track.uri = decodeLocation(parser.nextText());
+                        break;
+                    default:
+                        skip(parser);
+                }
+            }
+
+            if (items == null) {
+                emit(subscriber, track, position++);
+                continue;
+            }
+
+            // every position of the track in the playlist, it can be there more than once
+            int i = lowerBound(items, id << 32);
+            while (i < items.length && items[i] >>> 32 == id && !subscriber.isUnsubscribed()) {
+                emit(subscriber, track, (int) items[i]);
+                i++;
+            }
+
+            if (subscriber.isUnsubscribed())
+                return;
+        }
+    }
+
+    /**
+     * @param parsed the fields of the track, a copy is emitted for every position
+     */
+    private void emit(Subscriber<? super Track> subscriber, Track parsed, int position) {
+        Track track = new Track(-1, parsed.title, parsed.artist, parsed.uri, false);
+        track.duration = parsed.duration;
+        track.album = parsed.album;
+        track.position = position;
+        subscriber.onNext(track);
+    }
+
+    private static int lowerBound(long[] items, long value) {
+        int lo = 0, hi = items.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (items[mid] < value)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Locations are file URLs with their path percent encoded as UTF-8.
+     */
+    static String decodeLocation(String location) {
+        if (location.indexOf('%') < 0)
+            return location;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(location.length());
+        StringBuilder sb = new StringBuilder(location.length());
+        for (int i = 0; i < location.length(); i++) {
+            char c = location.charAt(i);
+            if (c == '%' && i + 2 < location.length()) {
+                int value = Character.digit(location.charAt(i + 1), 16) << 4
+                        | Character.digit(location.charAt(i + 2), 16);
+                if (value >= 0) {
+                    bytes.write(value);
+                    i += 2;
+                    continue;
+                }
+            }
+
+            if (bytes.size() > 0) {
+                sb.append(new String(bytes.toByteArray(), UTF_8));
+                bytes.reset();
+            }
+            sb.append(c);
+        }
+
+        if (bytes.size() > 0)
+            sb.append(new String(bytes.toByteArray(), UTF_8));
+
+        return sb.toString();
+    }
+
+    /**
+     * Skips the element the parser is at, with all its children.
+     */
+    private static void skip(XmlPullParser parser) throws XmlPullParserException, IOException {
+        parser.require(XmlPullParser.START_TAG, null, null);
+        int depth = 1;
+        while (depth != 0) {
+            switch (parser.next()) {
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    break;
+                case XmlPullParser.START_TAG:
+                    depth++;
+                    break;
+            }
+        }
+    }
+}
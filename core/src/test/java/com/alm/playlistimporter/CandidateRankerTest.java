@@ -0,0 +1,75 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CandidateRankerTest {
+
+    private static Track track(int id, int duration, String album) {
+        Track t = new Track(id, "Intro", "Band", "/music/" + id + "/intro.mp3", true);
+        t.duration = duration;
+        t.album = album;
+        return t;
+    }
+
+    private static Track entry(int duration, String album) {
+        Track t = new Track(-1, "Intro", "Band", "intro.mp3", false);
+        t.duration = duration;
+        t.album = album;
+        return t;
+    }
+
+    private static final List<Track> CANDIDATES = Arrays.asList(
+            track(1, 180, "First"),
+            track(2, 240, "Second"),
+            track(3, 241, "Live"),
+            track(4, -1, "Unknown length"));
+
+    @Test
+    public void picksTheOnlyOneCloseInLength() {
+        assertEquals(1, CandidateRanker.best(CANDIDATES, entry(181, null)).id);
+        assertEquals(1, CandidateRanker.best(CANDIDATES, entry(180 - CandidateRanker.DURATION_TOLERANCE, null)).id);
+        assertNull(CandidateRanker.best(CANDIDATES, entry(180 - CandidateRanker.DURATION_TOLERANCE - 1, null)));
+    }
+
+    @Test
+    public void albumBreaksTies() {
+        // both are within the tolerance
+        assertNull(CandidateRanker.best(CANDIDATES, entry(240, null)));
+        assertEquals(3, CandidateRanker.best(CANDIDATES, entry(240, "live")).id);
+        assertNull(CandidateRanker.best(CANDIDATES, entry(240, "First")));
+    }
+
+    @Test
+    public void albumAloneWithoutLength() {
+        assertEquals(4, CandidateRanker.best(CANDIDATES, entry(-1, "Unknown Length")).id);
+        assertNull(CandidateRanker.best(CANDIDATES, entry(-1, "Missing")));
+    }
+
+    @Test
+    public void nothingToRankBy() {
+        assertNull(CandidateRanker.best(CANDIDATES, entry(-1, null)));
+    }
+
+    @Test
+    public void sameAlbumTwiceIsAmbiguous() {
+        List<Track> candidates = Arrays.asList(track(1, 200, "Album"), track(2, 201, "Album"));
+        assertNull(CandidateRanker.best(candidates, entry(200, "Album")));
+    }
+
+    @Test
+    public void libraryUsesItForAmbiguousMatches() {
+        LibraryIndex library = LibraryIndex.load(new ListLibrarySource(
+                track(1, 180, "Studio"), track(2, 260, "Live")));
+
+        // the file name and the title are both shared, only the length tells them apart
+        assertNull(library.findByUri("intro.mp3"));
+        assertNull(library.findByTitle("Intro", "Band"));
+        assertEquals(2, library.find(entry(259, null)).id);
+        assertEquals(1, library.find(entry(-1, "studio")).id);
+    }
+}
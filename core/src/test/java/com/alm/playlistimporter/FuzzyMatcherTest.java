@@ -0,0 +1,80 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FuzzyMatcherTest {
+
+    private static int distance(String a, String b, int max) {
+        return FuzzyMatcher.distance(a, b, max, new FuzzyMatcher.Scratch(0));
+    }
+
+    private static FuzzyMatcher matcher(Track... tracks) {
+        FuzzyMatcher matcher = new FuzzyMatcher(FuzzyMatcher.DEFAULT_THRESHOLD);
+        for (Track t : tracks)
+            matcher.add(t);
+        matcher.build();
+        return matcher;
+    }
+
+    @Test
+    public void distance() {
+        assertEquals(0, distance("same", "same", 4));
+        assertEquals(3, distance("kitten", "sitting", 5));
+        assertEquals(1, distance("", "a", 1));
+        assertEquals(2, distance("ab", "ba", 2));
+    }
+
+    @Test
+    public void distanceGivesUpAboveMax() {
+        assertEquals(2, distance("abcdef", "uvwxyz", 1));
+        // the lengths alone are too far apart
+        assertEquals(3, distance("a", "abcdefgh", 2));
+    }
+
+    @Test
+    public void findsDespiteAccentsTyposAndFeaturing() {
+        FuzzyMatcher matcher = matcher(
+                new Track(1, "Café del Mar", "Energy 52"),
+                new Track(2, "Bohemian Rhapsody", "Queen"),
+                new Track(3, "Under Pressure", "Queen"));
+
+        assertEquals(1, matcher.find("Cafe del Mar", "Energy 52").id);
+        assertEquals(2, matcher.find("Bohemian Rapsody", "Queen").id);
+        assertEquals(3, matcher.find("Under Pressure (feat. David Bowie)", "Queen").id);
+        assertTrue(matcher.find("Under Pressure", "Queen").isAdded);
+    }
+
+    @Test
+    public void findsWithTitleAndArtistSwapped() {
+        FuzzyMatcher matcher = matcher(
+                new Track(1, "Wonderwall", "Oasis"),
+                new Track(2, "Yellow", "Coldplay"));
+
+        assertEquals(1, matcher.find("Oasis", "Wonderwall").id);
+    }
+
+    @Test
+    public void rejectsDissimilarAndAmbiguousMatches() {
+        FuzzyMatcher matcher = matcher(
+                new Track(1, "Intro", "Band A"),
+                new Track(2, "Intro", "Band B"),
+                new Track(3, "Something Else", "Someone"));
+
+        assertNull(matcher.find("Completely different", "Nobody"));
+        // one letter apart from both, neither is clearly better
+        assertNull(matcher.find("Intro", "Band C"));
+        assertNull(matcher.find("", null));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void findBeforeBuildFails() {
+        new FuzzyMatcher(FuzzyMatcher.DEFAULT_THRESHOLD).find("a", "b");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addAfterBuildFails() {
+        matcher().add(new Track(1, "a", "b"));
+    }
+}
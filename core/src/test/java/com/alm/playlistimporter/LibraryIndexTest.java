@@ -0,0 +1,65 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LibraryIndexTest {
+
+    private static final LibraryIndex LIBRARY = LibraryIndex.load(new ListLibrarySource(
+            new Track(1, "Yellow", "Coldplay", "/sdcard/Music/Parachutes/Yellow.mp3", false),
+            new Track(2, "Clocks", "Coldplay", "/sdcard/Music/Rush/Clocks.mp3", false),
+            new Track(3, "Intro", "The XX", "/sdcard/Music/XX/Intro.mp3", false),
+            new Track(4, "Intro", "The XX", "/sdcard/Music/XX Live/Intro.mp3", false)),
+            new FuzzyMatcher(FuzzyMatcher.DEFAULT_THRESHOLD));
+
+    @Test
+    public void findsByPathFirst() {
+        // the title says otherwise, the path wins
+        Track track = LIBRARY.find("Clocks", "Coldplay", "C:\\Music\\Parachutes\\yellow.mp3");
+        assertEquals(1, track.id);
+        assertTrue(track.isAdded);
+        assertEquals(4, LIBRARY.find("Intro", "The XX", "D:\\XX Live\\Intro.mp3").id);
+    }
+
+    @Test
+    public void findsByTitleAndArtistKeys() {
+        assertEquals(2, LIBRARY.find("CLOCKS", "coldplay", "missing.mp3").id);
+        assertEquals(2, LIBRARY.find("Clocks", "Coldplay", null).id);
+        assertEquals(2, LIBRARY.findByTitle("clocks", "COLDPLAY").id);
+        assertNull(LIBRARY.findByTitle("Clocks", null));
+    }
+
+    @Test
+    public void ambiguousMatchesAreNotGuessed() {
+        assertNull(LIBRARY.find("Intro", "The XX", "Intro.mp3"));
+        assertNull(LIBRARY.findByTitle("Intro", "The XX"));
+    }
+
+    @Test
+    public void fallsBackToFuzzyMatching() {
+        assertEquals(1, LIBRARY.find("Yelow", "Coldplay", null).id);
+        assertNull(LIBRARY.find("Something else", "Nobody", null));
+    }
+
+    @Test
+    public void findsByDevicePathIgnoringCase() {
+        assertEquals(3, LIBRARY.findByPath("/SDCARD/music/xx/intro.MP3").id);
+        assertNull(LIBRARY.findByPath("/sdcard/Music/Intro.mp3"));
+        assertNull(LIBRARY.findByPath(null));
+    }
+
+    @Test
+    public void returnsCopies() {
+        Track track = LIBRARY.findByPath("/sdcard/Music/Rush/Clocks.mp3");
+        track.title = "Changed";
+        assertEquals("Clocks", LIBRARY.findByPath("/sdcard/Music/Rush/Clocks.mp3").title);
+        assertEquals(4, LIBRARY.size());
+    }
+
+    @Test
+    public void pathKey() {
+        assertEquals("c:/music/a.mp3", LibraryIndex.pathKey("C:\\Music\\A.mp3"));
+        assertNull(LibraryIndex.pathKey(null));
+    }
+}
@@ -0,0 +1,40 @@
+package com.alm.playlistimporter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A library made of the tracks given, keyed by their lower case names.
+ */
+class ListLibrarySource implements LibrarySource {
+
+    static final LibraryIndex.KeyGenerator KEYS = new LibraryIndex.KeyGenerator() {
+        @Override
+        public String keyFor(String name) {
+            return name == null ? null : name.toLowerCase(Locale.US);
+        }
+    };
+
+    private final List<Track> mTracks;
+
+    ListLibrarySource(Track... tracks) {
+        mTracks = Arrays.asList(tracks);
+    }
+
+    @Override
+    public int size() {
+        return mTracks.size();
+    }
+
+    @Override
+    public LibraryIndex.KeyGenerator getKeyGenerator() {
+        return KEYS;
+    }
+
+    @Override
+    public void read(Visitor visitor) {
+        for (Track t : mTracks)
+            visitor.visit(t, KEYS.keyFor(t.title), KEYS.keyFor(t.artist));
+    }
+}
@@ -0,0 +1,92 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.*;
+
+public class M3UBufferParserTest {
+
+    private static final Charset LATIN_1 = Charset.forName("windows-1252");
+
+    /**
+     * @return the entries as text, to compare every field at once
+     */
+    static List<String> describe(List<Track> tracks) {
+        List<String> out = new ArrayList<>(tracks.size());
+        for (Track t : tracks)
+            out.add(t.position + "|" + t.title + "|" + t.artist + "|" + t.uri + "|" + t.duration);
+        return out;
+    }
+
+    static List<String> parseStream(byte[] file, String name) throws IOException {
+        TestSubscriber<Track> subscriber = new TestSubscriber<>();
+        new M3UPlaylistParser(name).parse(new ByteArrayInputStream(file), subscriber);
+        return describe(subscriber.getOnNextEvents());
+    }
+
+    private static List<String> parseBuffer(byte[] file, Charset charset) {
+        TestSubscriber<Track> subscriber = new TestSubscriber<>();
+        new M3UBufferParser(ByteBuffer.wrap(file), charset).parse(0, file.length, 0, subscriber);
+        return describe(subscriber.getOnNextEvents());
+    }
+
+    @Test
+    public void sameEntriesAsTheStreamParser() throws IOException {
+        Random random = new Random(1);
+        String[] pieces = {"#EXTINF:", "#EXTINF:12,", "#EXTM3U", "-", " - ", "a", "B", "\u00e9", "\u00fc",
+                "\r", "\n", "\r\n", ",", "C:\\Music\\x.mp3", "#", "  ", "7"};
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int count = random.nextInt(30);
+            for (int j = 0; j < count; j++)
+                sb.append(pieces[random.nextInt(pieces.length)]);
+
+            Charset charset = random.nextBoolean() ? PlaylistDecoder.UTF_8 : LATIN_1;
+            byte[] file = sb.toString().getBytes(charset);
+            String name = charset == PlaylistDecoder.UTF_8 ? "list.m3u8" : "list.m3u";
+            assertEquals(sb.toString(), parseStream(file, name), parseBuffer(file, charset));
+        }
+    }
+
+    @Test
+    public void decodesLinesLongerThanTheCharBuffer() throws IOException {
+        char[] chars = new char[1000];
+        Arrays.fill(chars, '\u00e9');
+        String name = new String(chars);
+        String text = "#EXTM3U\n#EXTINF:10,Short - A\nshort.mp3\n"
+                + "#EXTINF:20," + name + " - " + name + "\n/music/" + name + ".mp3\n";
+        byte[] file = text.getBytes(PlaylistDecoder.UTF_8);
+
+        List<String> entries = parseBuffer(file, PlaylistDecoder.UTF_8);
+        assertEquals(parseStream(file, "list.m3u8"), entries);
+        assertEquals("1|" + name + "|" + name + "|/music/" + name + ".mp3|20", entries.get(1));
+    }
+
+    @Test
+    public void parsesFromTheGivenLine() {
+        byte[] file = "#EXTINF:1,A - B\na.mp3\n#EXTINF:2,C - D\nc.mp3\n".getBytes(PlaylistDecoder.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(file);
+        TestSubscriber<Track> subscriber = new TestSubscriber<>();
+
+        int start = "#EXTINF:1,A - B\na.mp3\n".length();
+        assertEquals(6, new M3UBufferParser(buffer, PlaylistDecoder.UTF_8).parse(start, file.length, 5, subscriber));
+        assertEquals(Arrays.asList("5|C|D|c.mp3|2"), describe(subscriber.getOnNextEvents()));
+        assertEquals(file.length, buffer.position());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCharsetsWithoutAsciiBytes() {
+        new M3UBufferParser(ByteBuffer.allocate(0), Charset.forName("UTF-16LE"));
+    }
+}
@@ -0,0 +1,113 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.*;
+
+public class M3UPlaylistParserTest {
+
+    private static ByteBuffer buffer(String text) {
+        return ByteBuffer.wrap(text.getBytes(PlaylistDecoder.UTF_8));
+    }
+
+    private static M3UBufferParser aligner(String text) {
+        return new M3UBufferParser(buffer(text), PlaylistDecoder.UTF_8);
+    }
+
+    @Test
+    public void alignsToAnEntryAfterAnotherLine() {
+        // "#EXTM3U\n" is 0-7, the first entry 8-19, its path 20-22, the second entry 23-34
+        M3UBufferParser aligner = aligner("#EXTM3U\n#EXTINF:1,a\np1\n#EXTINF:2,b\np2\n");
+        assertEquals(0, aligner.alignToEntry(0));
+        assertEquals(8, aligner.alignToEntry(1));
+        // the line before isn't looked at, it could be an entry
+        assertEquals(23, aligner.alignToEntry(8));
+        assertEquals(23, aligner.alignToEntry(9));
+        assertEquals(23, aligner.alignToEntry(21));
+        assertEquals(38, aligner.alignToEntry(30));
+        assertEquals(38, aligner.alignToEntry(100));
+    }
+
+    @Test
+    public void neverAlignsToTheInfoLineUsedAsAPath() {
+        // the second line is the path of the first entry, even if it looks like an entry
+        M3UBufferParser aligner = aligner("#EXTINF:1,a\n#EXTINF:2,b\np\n#EXTINF:3,c\nq\n");
+        assertEquals(26, aligner.alignToEntry(1));
+    }
+
+    @Test
+    public void alignsAcrossCarriageReturns() {
+        M3UBufferParser aligner = aligner("#EXTINF:1,a\r\np1\r\n#EXTINF:2,b\r\np2\r\n");
+        assertEquals(17, aligner.alignToEntry(1));
+    }
+
+    /**
+     * A file of entries, comments and broken lines, bigger than a few chunks.
+     */
+    private static byte[] bigFile(long seed) {
+        Random random = new Random(seed);
+        String[] breaks = {"\n", "\r\n", "\r"};
+        StringBuilder sb = new StringBuilder("#EXTM3U\n");
+        for (int i = 0; sb.length() < 3 * M3UPlaylistParser.CHUNK_SIZE + 1000; i++) {
+            String lineBreak = breaks[random.nextInt(breaks.length)];
+            switch (random.nextInt(10)) {
+                case 0:
+                    sb.append("# comment ").append(i).append(lineBreak);
+                    break;
+                case 1:
+                    sb.append("#EXTINF:").append(i).append(",Without path").append(lineBreak);
+                    break;
+                case 2:
+                    sb.append("/no/info/").append(i).append(".mp3").append(lineBreak);
+                    break;
+                default:
+                    sb.append("#EXTINF:").append(random.nextInt(600)).append(",Títle ").append(i)
+                            .append(" - Ärtist ").append(i % 97).append(lineBreak)
+                            .append("/music/").append(i).append(".mp3").append(lineBreak);
+            }
+        }
+        return sb.toString().getBytes(PlaylistDecoder.UTF_8);
+    }
+
+    @Test
+    public void chunksGiveTheSameEntriesAsTheStream() throws IOException {
+        for (long seed = 0; seed < 3; seed++) {
+            byte[] file = bigFile(seed);
+            List<String> expected = M3UBufferParserTest.parseStream(file, "list.m3u8");
+
+            ByteBuffer buffer = ByteBuffer.wrap(file);
+            TestSubscriber<Track> subscriber = new TestSubscriber<>();
+            new M3UPlaylistParser("list.m3u8").parseChunks(buffer, PlaylistDecoder.UTF_8, 0, subscriber);
+            assertEquals(expected, M3UBufferParserTest.describe(subscriber.getOnNextEvents()));
+            assertEquals(file.length, buffer.position());
+
+            subscriber = new TestSubscriber<>();
+            assertTrue(new M3UPlaylistParser("list.m3u8").parse(ByteBuffer.wrap(file), subscriber));
+            assertEquals(expected, M3UBufferParserTest.describe(subscriber.getOnNextEvents()));
+        }
+    }
+
+    @Test
+    public void stopsWhenUnsubscribed() throws IOException {
+        byte[] file = bigFile(7);
+        int entries = M3UBufferParserTest.parseStream(file, "list.m3u8").size();
+        TestSubscriber<Track> subscriber = new TestSubscriber<Track>() {
+            @Override
+            public void onNext(Track track) {
+                super.onNext(track);
+                if (getOnNextEvents().size() == 10)
+                    unsubscribe();
+            }
+        };
+        new M3UPlaylistParser("list.m3u8").parseChunks(ByteBuffer.wrap(file), PlaylistDecoder.UTF_8, 0, subscriber);
+        // the rest of the chunk being emitted is still received
+        assertTrue(subscriber.getOnNextEvents().size() < entries / 2);
+    }
+}
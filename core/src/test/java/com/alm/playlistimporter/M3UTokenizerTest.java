@@ -0,0 +1,112 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class M3UTokenizerTest {
+
+    private static M3UTokenizer entry(String line) {
+        M3UTokenizer tokenizer = new M3UTokenizer();
+        tokenizer.setLine(line.toCharArray(), line.length());
+        tokenizer.parseEntry();
+        return tokenizer;
+    }
+
+    @Test
+    public void readsEveryLineEnding() throws IOException {
+        // a buffer smaller than the lines so they span several reads
+        M3UTokenizer tokenizer = new M3UTokenizer(new StringReader("one\r\ntwo\rthree\n\nfour"), new char[3]);
+
+        String[] expected = {"one", "two", "three", "", "four"};
+        for (String line : expected) {
+            assertTrue(tokenizer.nextLine());
+            assertEquals(line, tokenizer.line());
+        }
+        assertFalse(tokenizer.nextLine());
+        assertNull(tokenizer.line());
+    }
+
+    @Test
+    public void growsForLongLines() throws IOException {
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        String line = new String(chars);
+
+        M3UTokenizer tokenizer = new M3UTokenizer(new StringReader(line + "\n" + line));
+        assertTrue(tokenizer.nextLine());
+        assertEquals(line, tokenizer.line());
+        assertTrue(tokenizer.nextLine());
+        assertEquals(line, tokenizer.line());
+        assertFalse(tokenizer.nextLine());
+    }
+
+    @Test
+    public void startsWith() {
+        M3UTokenizer tokenizer = new M3UTokenizer();
+        tokenizer.setLine("#EXTINF:1,a".toCharArray(), 11);
+        assertTrue(tokenizer.startsWith("#EXTINF:"));
+        assertFalse(tokenizer.startsWith("#EXTM3U"));
+        assertFalse(tokenizer.startsWith("#EXTINF:1,a and more"));
+    }
+
+    @Test
+    public void parsesDuration() {
+        assertEquals(215, entry("#EXTINF:215,Title - Artist").duration());
+        assertEquals(-1, entry("#EXTINF:-1,Title - Artist").duration());
+        assertEquals(-1, entry("#EXTINF:abc,Title - Artist").duration());
+        assertEquals(-1, entry("#EXTINF:,Title - Artist").duration());
+        assertEquals(-1, entry("#EXTINF:").duration());
+        assertEquals(12, entry("#EXTINF:12.5,Title - Artist").duration());
+    }
+
+    @Test
+    public void splitsAtTheOnlyDash() {
+        M3UTokenizer tokenizer = entry("#EXTINF:1,  Title -   Artist  ");
+        assertEquals("Title", tokenizer.title());
+        assertEquals("Artist", tokenizer.artist());
+    }
+
+    @Test
+    public void splitsAtTheLastOfTwoDashes() {
+        M3UTokenizer tokenizer = entry("#EXTINF:1,Title - Live - Artist");
+        assertEquals("Title - Live", tokenizer.title());
+        assertEquals("Artist", tokenizer.artist());
+    }
+
+    @Test
+    public void withoutDashesEverythingIsTheTitle() {
+        M3UTokenizer tokenizer = entry("#EXTINF:1,Only a title");
+        assertEquals("Only a title", tokenizer.title());
+        assertEquals("", tokenizer.artist());
+    }
+
+    @Test
+    public void joinsPartsWithoutDashesWhenThereAreMore() {
+        M3UTokenizer tokenizer = entry("#EXTINF:1,a-b-c-d");
+        assertEquals("abc", tokenizer.title());
+        assertEquals("d", tokenizer.artist());
+
+        tokenizer = entry("#EXTINF:1,a-b-c-d-e");
+        assertEquals("abc", tokenizer.title());
+        assertEquals("de", tokenizer.artist());
+    }
+
+    @Test
+    public void emptyPartsAtTheEndDontCount() {
+        M3UTokenizer tokenizer = entry("#EXTINF:1,a-b-c---");
+        assertEquals("ab", tokenizer.title());
+        assertEquals("c", tokenizer.artist());
+    }
+
+    @Test
+    public void trailingDashGivesAnEmptyArtist() {
+        M3UTokenizer tokenizer = entry("#EXTINF:1,Title -");
+        assertEquals("Title", tokenizer.title());
+        assertEquals("", tokenizer.artist());
+    }
+}
@@ -0,0 +1,85 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Observable;
+import rx.functions.Action1;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.*;
+
+public class OrderedParallelTest {
+
+    @Test
+    public void keepsTheOrderOfTheItems() {
+        final Random random = new Random(3);
+        List<Integer> results = OrderedParallel.map(Observable.range(0, 500), new Func1<Integer, Integer>() {
+            @Override
+            public Integer call(Integer i) {
+                try {
+                    Thread.sleep(random.nextInt(3)); // finish out of order
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return i * 2;
+            }
+        }, 4).toList().toBlocking().single();
+
+        assertEquals(500, results.size());
+        for (int i = 0; i < results.size(); i++)
+            assertEquals(i * 2, (int) results.get(i));
+    }
+
+    @Test
+    public void onlyTakesAFewItemsAhead() {
+        final AtomicInteger taken = new AtomicInteger();
+        Observable<Integer> items = Observable.range(0, 1000).doOnNext(new Action1<Integer>() {
+            @Override
+            public void call(Integer i) {
+                taken.incrementAndGet();
+            }
+        });
+
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>(0);
+        OrderedParallel.map(items, new Func1<Integer, Integer>() {
+            @Override
+            public Integer call(Integer i) {
+                return i;
+            }
+        }, 4).subscribe(subscriber);
+
+        subscriber.requestMore(10);
+        subscriber.awaitTerminalEvent(200, TimeUnit.MILLISECONDS);
+        subscriber.assertValueCount(10);
+        // a few groups of concurrency items, not the whole source
+        assertTrue(taken.get() + " taken", taken.get() <= 32);
+
+        subscriber.requestMore(Long.MAX_VALUE);
+        subscriber.awaitTerminalEvent();
+        subscriber.assertCompleted();
+        subscriber.assertValueCount(1000);
+    }
+
+    @Test
+    public void errorsReachTheSubscriber() {
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+        OrderedParallel.map(Observable.range(0, 10), new Func1<Integer, Integer>() {
+            @Override
+            public Integer call(Integer i) {
+                if (i == 5)
+                    throw new IllegalStateException();
+                return i;
+            }
+        }, 2).subscribe(subscriber);
+
+        subscriber.awaitTerminalEvent();
+        subscriber.assertError(IllegalStateException.class);
+        subscriber.assertValues(0, 1, 2, 3, 4);
+    }
+}
@@ -0,0 +1,83 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.*;
+
+public class PacedOnSubscribeTest {
+
+    /**
+     * Counts the items handed to the paced subscriber, whether they were emitted yet or not
+     */
+    private static class Counter extends PacedOnSubscribe<Integer> {
+
+        final AtomicInteger offered = new AtomicInteger();
+        private final int mCount;
+
+        Counter(int count) {
+            mCount = count;
+        }
+
+        @Override
+        protected void emit(Subscriber<Integer> subscriber) {
+            for (int i = 0; i < mCount && !subscriber.isUnsubscribed(); i++) {
+                offered.incrementAndGet();
+                subscriber.onNext(i);
+            }
+            subscriber.onCompleted();
+        }
+    }
+
+    private static Thread subscribe(final Observable<Integer> source, final Subscriber<Integer> subscriber) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                source.subscribe(subscriber);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void waitsForRequests() throws InterruptedException {
+        Counter counter = new Counter(1000);
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>(0);
+        Thread thread = subscribe(Observable.create(counter), subscriber);
+
+        subscriber.requestMore(5);
+        thread.join(200);
+        assertTrue(thread.isAlive());
+        subscriber.assertValues(0, 1, 2, 3, 4);
+        // the next one is parsed and waiting
+        assertEquals(6, counter.offered.get());
+
+        subscriber.requestMore(Long.MAX_VALUE);
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        subscriber.assertCompleted();
+        subscriber.assertValueCount(1000);
+    }
+
+    @Test
+    public void unsubscribingWakesTheWaitingThread() throws InterruptedException {
+        Counter counter = new Counter(1000);
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>(0);
+        Thread thread = subscribe(Observable.create(counter), subscriber);
+
+        subscriber.requestMore(1);
+        thread.join(100);
+        subscriber.unsubscribe();
+        thread.join(5000);
+
+        assertFalse(thread.isAlive());
+        subscriber.assertValues(0);
+        assertEquals(2, counter.offered.get());
+    }
+}
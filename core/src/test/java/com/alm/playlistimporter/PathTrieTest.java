@@ -0,0 +1,90 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PathTrieTest {
+
+    private static Track track(int id, String path) {
+        return new Track(id, "Title " + id, "Artist", path, true);
+    }
+
+    private static PathTrie trie(Track... tracks) {
+        PathTrie trie = new PathTrie(16);
+        for (Track t : tracks)
+            trie.add(t);
+        return trie;
+    }
+
+    private static List<Integer> candidates(PathTrie trie, String path) {
+        List<Track> out = new ArrayList<>();
+        trie.candidates(path, out);
+        List<Integer> ids = new ArrayList<>();
+        for (Track t : out)
+            ids.add(t.id);
+        Collections.sort(ids);
+        return ids;
+    }
+
+    @Test
+    public void findsByFileNameAlone() {
+        PathTrie trie = trie(track(1, "/sdcard/Music/a.mp3"), track(2, "/sdcard/Music/b.mp3"));
+        assertEquals(1, trie.find("C:\\Users\\me\\Music\\A.MP3").id);
+        assertEquals(2, trie.find("b.mp3").id);
+        assertNull(trie.find("c.mp3"));
+        assertNull(trie.find(null));
+        assertNull(trie.find("/"));
+    }
+
+    @Test
+    public void tellsApartByTheFolders() {
+        PathTrie trie = trie(
+                track(1, "/sdcard/Music/Album A/01 - Intro.mp3"),
+                track(2, "/sdcard/Music/Album B/01 - Intro.mp3"),
+                track(3, "/sdcard/Other/Album B/01 - Intro.mp3"));
+
+        assertEquals(1, trie.find("D:\\iTunes\\Album A\\01 - Intro.mp3").id);
+        assertEquals(3, trie.find("../Other/Album B/01 - Intro.mp3").id);
+        // the album alone doesn't tell 2 and 3 apart
+        assertNull(trie.find("Album B/01 - Intro.mp3"));
+        assertEquals(asList(2, 3), candidates(trie, "Album B/01 - Intro.mp3"));
+        assertEquals(asList(1, 2, 3), candidates(trie, "01 - Intro.mp3"));
+    }
+
+    @Test
+    public void addingTheSameTrackTwiceChangesNothing() {
+        PathTrie trie = trie(track(1, "/a/x.mp3"), track(1, "/a/x.mp3"));
+        assertEquals(1, trie.find("x.mp3").id);
+    }
+
+    @Test
+    public void keepsATrackWhosePathIsTheSuffixOfAnother() {
+        for (boolean shortFirst : new boolean[]{true, false}) {
+            Track shorter = track(1, "Music/x.mp3"), longer = track(2, "/sdcard/Music/x.mp3");
+            PathTrie trie = shortFirst ? trie(shorter, longer) : trie(longer, shorter);
+
+            assertEquals(asList(1, 2), candidates(trie, "x.mp3"));
+            // the whole path of the shorter one is the suffix
+            assertEquals(1, trie.find("Music/x.mp3").id);
+            assertEquals(1, trie.find("/storage/Music/x.mp3").id);
+            assertEquals(2, trie.find("/sdcard/Music/x.mp3").id);
+        }
+    }
+
+    @Test
+    public void samePathWithDifferentCaseIsAmbiguous() {
+        PathTrie trie = trie(track(1, "/Music/x.mp3"), track(2, "/a/Music/x.mp3"), track(3, "/music/X.mp3"));
+        assertNull(trie.find("Music/x.mp3"));
+        assertEquals(2, trie.find("a/Music/x.mp3").id);
+    }
+
+    private static List<Integer> asList(Integer... ids) {
+        return Arrays.asList(ids);
+    }
+}
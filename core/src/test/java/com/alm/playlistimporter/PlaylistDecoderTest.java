@@ -0,0 +1,103 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PlaylistDecoderTest {
+
+    private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++)
+            bytes[i] = (byte) values[i];
+        return bytes;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static Charset detect(byte[] sample, String name) {
+        return PlaylistDecoder.detect(sample, sample.length, name);
+    }
+
+    private static String read(byte[] file, String name) throws IOException {
+        Reader reader = PlaylistDecoder.open(new ByteArrayInputStream(file), name);
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[256];
+        int read;
+        while ((read = reader.read(buffer)) > 0)
+            sb.append(buffer, 0, read);
+        return sb.toString();
+    }
+
+    @Test
+    public void byteOrderMarkWins() {
+        assertEquals(PlaylistDecoder.UTF_8, detect(bytes(0xEF, 0xBB, 0xBF, 0xE9), "list.m3u"));
+        assertEquals(Charset.forName("UTF-16BE"), detect(bytes(0xFE, 0xFF, 0, 'a'), "list.m3u8"));
+        assertEquals(UTF_16LE, detect(bytes(0xFF, 0xFE, 'a', 0), "list.m3u8"));
+
+        assertEquals(3, PlaylistDecoder.bomLength(bytes(0xEF, 0xBB, 0xBF), 3));
+        assertEquals(2, PlaylistDecoder.bomLength(bytes(0xFF, 0xFE), 2));
+        assertEquals(0, PlaylistDecoder.bomLength(bytes(0xEF, 0xBB), 2));
+    }
+
+    @Test
+    public void m3u8IsAlwaysUtf8() {
+        assertEquals(PlaylistDecoder.UTF_8, detect(bytes('a', 0xE9, 'b'), "LIST.M3U8"));
+    }
+
+    @Test
+    public void invalidUtf8IsLatin1() {
+        Charset charset = detect("Café".getBytes(Charset.forName("ISO-8859-1")), "list.m3u");
+        assertNotEquals(PlaylistDecoder.UTF_8, charset);
+        assertTrue(PlaylistDecoder.isAsciiCompatible(charset));
+
+        assertEquals(PlaylistDecoder.UTF_8, detect("Café".getBytes(PlaylistDecoder.UTF_8), null));
+        assertEquals(PlaylistDecoder.UTF_8, detect("plain".getBytes(PlaylistDecoder.UTF_8), null));
+    }
+
+    @Test
+    public void isUtf8() {
+        assertTrue(PlaylistDecoder.isUtf8(bytes(0xF0, 0x9F, 0x8E, 0xB5), 4));
+        // a sequence cut by the end of a full sample, but not by the end of the file
+        byte[] sample = new byte[PlaylistDecoder.SAMPLE_SIZE];
+        Arrays.fill(sample, (byte) 'a');
+        sample[sample.length - 2] = (byte) 0xE2;
+        sample[sample.length - 1] = (byte) 0x82;
+        assertTrue(PlaylistDecoder.isUtf8(sample, sample.length));
+        assertFalse(PlaylistDecoder.isUtf8(bytes('a', 0xE2, 0x82), 3));
+        // overlong and out of range lead bytes, continuation byte alone
+        assertFalse(PlaylistDecoder.isUtf8(bytes(0xC0, 0x80), 2));
+        assertFalse(PlaylistDecoder.isUtf8(bytes(0xF5, 0x80, 0x80, 0x80), 4));
+        assertFalse(PlaylistDecoder.isUtf8(bytes('a', 0x80), 2));
+        assertFalse(PlaylistDecoder.isUtf8(bytes(0xE2, 'a', 0x82), 3));
+    }
+
+    @Test
+    public void opensWithoutTheByteOrderMark() throws IOException {
+        byte[] text = "#EXTM3U\nÀ".getBytes(PlaylistDecoder.UTF_8);
+        assertEquals("#EXTM3U\nÀ", read(concat(bytes(0xEF, 0xBB, 0xBF), text), "list.m3u"));
+        assertEquals("#EXTM3U\nÀ", read(concat(bytes(0xFF, 0xFE), "#EXTM3U\nÀ".getBytes(UTF_16LE)), "list.m3u"));
+    }
+
+    @Test
+    public void readsPastTheSample() throws IOException {
+        // valid UTF-8 in the sample, the rest of the file is decoded with the same charset
+        char[] chars = new char[PlaylistDecoder.SAMPLE_SIZE * 2];
+        Arrays.fill(chars, 'é');
+        String text = new String(chars);
+        assertEquals(text, read(text.getBytes(PlaylistDecoder.UTF_8), "list.m3u"));
+        assertEquals("", read(new byte[0], "list.m3u"));
+    }
+}
@@ -0,0 +1,119 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PlaylistMovesTest {
+
+    /**
+     * Syncs a playlist with the members old, ordered, into the order of the file like
+     * PlaylistSync does: the members the file doesn't have are deleted, the entries the
+     * playlist doesn't have are appended and then the moves are made.
+     * @return the number of moves
+     */
+    private static int sync(String old, String file) {
+        final List<Character> playlist = new ArrayList<>();
+        for (char c : old.toCharArray()) {
+            if (file.indexOf(c) >= 0)
+                playlist.add(c);
+        }
+        for (char c : file.toCharArray()) {
+            if (old.indexOf(c) < 0)
+                playlist.add(c);
+        }
+
+        int[] orders = new int[file.length()];
+        for (int i = 0; i < orders.length; i++) {
+            int order = old.indexOf(file.charAt(i));
+            orders[i] = order >= 0 ? order : old.length() + i;
+        }
+
+        boolean[] kept = PlaylistMoves.kept(orders, orders.length);
+        int moves = PlaylistMoves.apply(orders, orders.length, kept, new PlaylistMoves.Mover() {
+            @Override
+            public boolean move(int from, int to) {
+                playlist.add(to, playlist.remove(from));
+                return true;
+            }
+        });
+
+        StringBuilder sb = new StringBuilder();
+        for (char c : playlist)
+            sb.append(c);
+        assertEquals(file, sb.toString());
+        assertEquals(PlaylistMoves.count(kept), moves);
+        return moves;
+    }
+
+    @Test
+    public void unchangedPlaylistIsntMoved() {
+        assertEquals(0, sync("abcdefgh", "abcdefgh"));
+        assertEquals(0, sync("", ""));
+    }
+
+    @Test
+    public void insertsAndDeletesDontMoveTheRest() {
+        assertEquals(0, sync("abcdefgh", "abcdefghij"));
+        assertEquals(0, sync("abcdefgh", "bcdefgh"));
+        assertEquals(0, sync("abcdefgh", "acdfh"));
+        // the new entry is appended and moved to the top, nothing else is
+        assertEquals(1, sync("abcdefgh", "xabcdefgh"));
+        assertEquals(1, sync("abcdefgh", "abcdxefgh"));
+        assertEquals(2, sync("abcdefgh", "xbcdeyfgh"));
+    }
+
+    @Test
+    public void movesOnlyWhatLeftItsPlace() {
+        assertEquals(1, sync("abcdefgh", "bcdefgha"));
+        assertEquals(1, sync("abcdefgh", "habcdefg"));
+        assertEquals(2, sync("abcdefgh", "badcefgh"));
+        assertEquals(7, sync("abcdefgh", "hgfedcba"));
+    }
+
+    @Test
+    public void keepsTheLongestIncreasingRun() {
+        boolean[] kept = PlaylistMoves.kept(new int[]{5, 1, 2, 9, 3, 4, 0}, 7);
+        assertArrayEquals(new boolean[]{false, true, true, false, true, true, false}, kept);
+        assertEquals(3, PlaylistMoves.count(kept));
+    }
+
+    @Test
+    public void randomEditsEndInTheFileOrder() {
+        Random random = new Random(7);
+        String letters = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+        for (int round = 0; round < 200; round++) {
+            List<Character> chars = new ArrayList<>();
+            for (char c : letters.toCharArray())
+                chars.add(c);
+            Collections.shuffle(chars, random);
+
+            String old = join(chars.subList(0, 30));
+            List<Character> file = new ArrayList<>(chars.subList(0, 30));
+            int added = 30;
+            for (int edit = random.nextInt(6); edit > 0; edit--) {
+                int kind = random.nextInt(3);
+                if (kind == 0 && !file.isEmpty())
+                    file.remove(random.nextInt(file.size()));
+                else if (kind == 1)
+                    file.add(random.nextInt(file.size() + 1), chars.get(added++));
+                else if (!file.isEmpty())
+                    file.add(random.nextInt(file.size()), file.remove(random.nextInt(file.size())));
+            }
+
+            sync(old, join(file));
+        }
+    }
+
+    private static String join(List<Character> chars) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : chars)
+            sb.append(c);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,71 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RootMappingTest {
+
+    private static final LibraryIndex LIBRARY = LibraryIndex.load(new ListLibrarySource(
+            new Track(1, "One", "A", "/storage/emulated/0/Music/A/01.mp3", false),
+            new Track(2, "Two", "A", "/storage/emulated/0/Music/A/02.mp3", false),
+            new Track(3, "Three", "B", "/storage/emulated/0/Music/B/03.mp3", false),
+            new Track(4, "Four", "B", "/storage/emulated/0/Music/B/04.mp3", false),
+            new Track(5, "Five", "C", "/storage/sdcard1/Other/05.mp3", false)));
+
+    private static void learn(RootMapping roots, int times, String from, String to) {
+        for (int i = 0; i < times; i++)
+            roots.learn(from + i + ".mp3", to + i + ".mp3");
+    }
+
+    @Test
+    public void rewritesOnceEnoughMatchesAgree() {
+        RootMapping roots = new RootMapping();
+        learn(roots, RootMapping.CONFIDENT_MATCHES - 1, "C:\\Users\\me\\Music\\X\\", "/storage/emulated/0/Music/X/");
+        assertNull(roots.find(LIBRARY, "C:\\Users\\me\\Music\\B\\03.mp3"));
+
+        roots.learn("C:\\Users\\me\\Music\\Y\\y.mp3", "/storage/emulated/0/Music/Y/y.mp3");
+        Track track = roots.find(LIBRARY, "c:\\users\\me\\music\\B\\03.MP3");
+        assertEquals(3, track.id);
+        assertEquals(1, roots.find(LIBRARY, "C:/Users/me/Music/A/01.mp3").id);
+
+        // under the root but not in the library, or not under the root
+        assertNull(roots.find(LIBRARY, "C:\\Users\\me\\Music\\B\\99.mp3"));
+        assertNull(roots.find(LIBRARY, "D:\\Music\\B\\03.mp3"));
+        assertNull(roots.find(LIBRARY, null));
+    }
+
+    @Test
+    public void rootsAreWholeFolders() {
+        RootMapping roots = new RootMapping();
+        // "MyMusic" and "Music" end the same, the roots must not cut the folder name
+        learn(roots, RootMapping.CONFIDENT_MATCHES, "/home/me/MyMusic/B/", "/storage/emulated/0/Music/B/");
+        assertEquals(4, roots.find(LIBRARY, "/home/me/MyMusic/B/04.mp3").id);
+        assertEquals(1, roots.find(LIBRARY, "/home/me/MyMusic/A/01.mp3").id);
+        assertNull(roots.find(LIBRARY, "/home/me/Music/A/01.mp3"));
+    }
+
+    @Test
+    public void disagreeingMatchesAreNotUsed() {
+        RootMapping roots = new RootMapping();
+        roots.learn("C:\\Music\\A\\01.mp3", "/storage/emulated/0/Music/A/01.mp3");
+        roots.learn("C:\\Music\\B\\03.mp3", "/storage/emulated/0/Music/B/03.mp3");
+        roots.learn("C:\\Music\\05.mp3", "/storage/sdcard1/Other/05.mp3");
+        assertNull(roots.find(LIBRARY, "C:\\Music\\A\\02.mp3"));
+
+        // nothing in common but the root
+        roots.learn("C:\\Music\\a.mp3", "/storage/b.mp3");
+        roots.learn(null, "/storage/b.mp3");
+        assertNull(roots.find(LIBRARY, "C:\\Music\\A\\02.mp3"));
+    }
+
+    @Test
+    public void learnsSeveralRoots() {
+        RootMapping roots = new RootMapping();
+        learn(roots, RootMapping.CONFIDENT_MATCHES, "C:\\Music\\", "/storage/emulated/0/Music/");
+        learn(roots, RootMapping.CONFIDENT_MATCHES, "E:\\Other\\", "/storage/sdcard1/Other/");
+
+        assertEquals(2, roots.find(LIBRARY, "C:\\Music\\A\\02.mp3").id);
+        assertEquals(5, roots.find(LIBRARY, "E:\\Other\\05.mp3").id);
+    }
+}
@@ -0,0 +1,75 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SearchIndexTest {
+
+    private static final SearchIndex INDEX = SearchIndex.load(new ListLibrarySource(
+            new Track(1, "Wonderwall", "Oasis"),
+            new Track(2, "Champagne Supernova", "Oasis"),
+            new Track(3, "Yellow", "Coldplay"),
+            new Track(4, "Canción del Mariachi", "Antonio Banderas"),
+            new Track(5, "Untitled", null)));
+
+    private static int[] ids(SearchIndex.Results results) {
+        int[] ids = new int[results.size()];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = results.get(i).id;
+        return ids;
+    }
+
+    @Test
+    public void findsInfixesOfTitlesAndArtists() {
+        assertArrayEquals(new int[]{2}, ids(INDEX.search("supern")));
+        assertArrayEquals(new int[]{3}, ids(INDEX.search("oldpla")));
+    }
+
+    @Test
+    public void sortsByArtistAndTitle() {
+        assertArrayEquals(new int[]{2, 1}, ids(INDEX.search("oasis")));
+    }
+
+    @Test
+    public void ignoresCaseAndAccents() {
+        assertArrayEquals(new int[]{4}, ids(INDEX.search("CANCION")));
+    }
+
+    @Test
+    public void needsTheWholeQuery() {
+        // every trigram is in the library, but not together
+        assertEquals(0, INDEX.search("wall yellow").size());
+        assertEquals(0, INDEX.search("nothing like it").size());
+    }
+
+    @Test
+    public void shortQueriesCheckEveryTrack() {
+        assertArrayEquals(new int[]{3, 1}, ids(INDEX.search("ll")));
+        assertEquals(0, INDEX.search("  ").size());
+    }
+
+    @Test
+    public void resultsAreNewTracks() {
+        Track track = INDEX.search("yellow").get(0);
+        assertEquals("Yellow", track.title);
+        assertEquals("Coldplay", track.artist);
+        assertNotSame(track, INDEX.search("yellow").get(0));
+    }
+
+    @Test
+    public void comparesResultsWithoutBuildingTracks() {
+        SearchIndex.Results oasis = INDEX.search("oasis"), wonderwall = INDEX.search("wonderwall");
+        assertEquals(2, oasis.getId(0));
+        assertEquals(1, oasis.getId(1));
+        assertTrue(wonderwall.hasSameContents(0, oasis, 1));
+
+        SearchIndex renamed = SearchIndex.load(new ListLibrarySource(
+                new Track(1, "Wonderwall (Remastered)", "Oasis"),
+                new Track(2, "Champagne Supernova", "Oasis")));
+        SearchIndex.Results again = renamed.search("oasis");
+        assertEquals(2, again.getId(0));
+        assertTrue(again.hasSameContents(0, oasis, 0));
+        assertFalse(again.hasSameContents(1, oasis, 1));
+    }
+}
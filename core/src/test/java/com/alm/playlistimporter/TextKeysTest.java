@@ -0,0 +1,27 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TextKeysTest {
+
+    @Test
+    public void lowerCaseWordsWithoutAccents() {
+        assertEquals("cafe del mar", TextKeys.normalize("  Café  DEL-Mar!! ", false));
+        assertEquals("bjork 2", TextKeys.normalize("Björk (2)", false));
+        assertEquals("", TextKeys.normalize("?!", false));
+        assertEquals("", TextKeys.normalize(null, false));
+    }
+
+    @Test
+    public void stripsFeaturing() {
+        assertEquals("under pressure", TextKeys.normalize("Under Pressure (feat. Bowie)", true));
+        assertEquals("song", TextKeys.normalize("Song ft Someone", true));
+        assertEquals("song", TextKeys.normalize("Song Featuring Someone", true));
+        assertEquals("song feat x", TextKeys.normalize("Song feat. X", false));
+        // only whole words
+        assertEquals("feature film", TextKeys.normalize("Feature Film", true));
+        assertEquals("", TextKeys.normalize("feat. Someone", true));
+    }
+}
@@ -0,0 +1,109 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class WrittenPositionsTest {
+
+    private static List<Track> chunk(int... positions) {
+        List<Track> tracks = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            Track t = new Track(position, null, null);
+            t.position = position;
+            tracks.add(t);
+        }
+        return tracks;
+    }
+
+    @Test
+    public void onlyAdvancesOverContiguousPositions() {
+        WrittenPositions written = new WrittenPositions(0);
+        assertEquals(0, written.add(chunk(3, 4, 5)));
+        assertEquals(0, written.add(chunk(1, 2)));
+        assertEquals(6, written.add(chunk(0)));
+        assertEquals(6, written.add(chunk(7)));
+        assertEquals(8, written.add(chunk(6)));
+        assertEquals(8, written.next());
+    }
+
+    @Test
+    public void startsFromTheCheckpoint() {
+        WrittenPositions written = new WrittenPositions(10);
+        assertEquals(10, written.next());
+        assertEquals(10, written.add(chunk(11)));
+        assertEquals(12, written.add(chunk(10)));
+    }
+
+    /**
+     * An import of entries emitted out of order is interrupted after some chunks and resumed
+     * from the checkpoint like ImportJob does: the members from the checkpoint on are deleted
+     * and the entries from it on are written again. Every entry must end up once.
+     */
+    @Test
+    public void resumesOutOfOrderSource() {
+        int size = 1000, chunkSize = 37;
+        List<Integer> order = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            order.add(i);
+        Random random = new Random(42);
+
+        for (int interruptAfter = 1; interruptAfter * chunkSize < size; interruptAfter += 3) {
+            // nearby entries shuffled, like the tracks of a library export
+            for (int i = 0; i < size; i += 100)
+                Collections.shuffle(order.subList(i, Math.min(size, i + 100)), random);
+
+            TreeMap<Integer, Integer> members = new TreeMap<>(); // play order -> times written
+            int checkpoint = write(order, 0, members, interruptAfter, chunkSize);
+
+            members.tailMap(checkpoint).clear();
+            write(order, checkpoint, members, Integer.MAX_VALUE, chunkSize);
+
+            assertEquals(size, members.size());
+            for (int count : members.values())
+                assertEquals(1, count);
+        }
+    }
+
+    /**
+     * @param chunks number of chunks written before the import is killed
+     * @return the last checkpoint saved
+     */
+    private static int write(List<Integer> order, int from, TreeMap<Integer, Integer> members,
+                             int chunks, int chunkSize) {
+        WrittenPositions written = new WrittenPositions(from);
+        List<Integer> pending = new ArrayList<>();
+        for (int position : order) {
+            if (position < from)
+                continue;
+
+            pending.add(position);
+            if (pending.size() == chunkSize) {
+                int checkpoint = written.next();
+                flush(pending, members, written);
+                if (--chunks == 0)
+                    return checkpoint; // killed before saving the checkpoint of the last chunk
+            }
+        }
+        if (!pending.isEmpty())
+            flush(pending, members, written);
+        return written.next();
+    }
+
+    private static void flush(List<Integer> pending, TreeMap<Integer, Integer> members, WrittenPositions written) {
+        int[] positions = new int[pending.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = pending.get(i);
+            Integer count = members.get(positions[i]);
+            members.put(positions[i], count == null ? 1 : count + 1);
+        }
+        written.add(chunk(positions));
+        pending.clear();
+    }
+}
@@ -0,0 +1,162 @@
+package com.alm.playlistimporter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.*;
+
+public class XMLPlaylistParserTest {
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<plist version=\"1.0\">\n<dict>\n";
+
+    private static String track(int id, String name, String location) {
+        return "<key>" + id + "</key><dict>"
+                + "<key>Track ID</key><integer>" + id + "</integer>"
+                + "<key>Name</key><string>" + name + "</string>"
+                + "<key>Artist</key><string>Artist</string>"
+                + "<key>Album</key><string>Album</string>"
+                + "<key>Total Time</key><integer>" + (200000 + id) + "</integer>"
+                + "<key>Location</key><string>" + location + "</string>"
+                + "</dict>\n";
+    }
+
+    private static String playlist(String name, boolean master, int... ids) {
+        StringBuilder sb = new StringBuilder("<dict><key>Name</key><string>" + name + "</string>");
+        if (master)
+            sb.append("<key>Master</key><true/>");
+        sb.append("<key>Playlist Items</key><array>");
+        for (int id : ids)
+            sb.append("<dict><key>Track ID</key><integer>").append(id).append("</integer></dict>");
+        return sb.append("</array></dict>\n").toString();
+    }
+
+    private static List<Track> parse(String xml) throws Exception {
+        final byte[] bytes = xml.getBytes(Charset.forName("UTF-8"));
+        XMLPlaylistParser parser = new XMLPlaylistParser(new Callable<InputStream>() {
+            @Override
+            public InputStream call() throws Exception {
+                return new ByteArrayInputStream(bytes);
+            }
+        });
+
+        TestSubscriber<Track> subscriber = new TestSubscriber<>();
+        parser.parse(new ByteArrayInputStream(bytes), subscriber);
+        return subscriber.getOnNextEvents();
+    }
+
+    private static List<Track> byPosition(List<Track> tracks) {
+        List<Track> sorted = new ArrayList<>(tracks);
+        Collections.sort(sorted, new Comparator<Track>() {
+            @Override
+            public int compare(Track a, Track b) {
+                return a.position - b.position;
+            }
+        });
+        return sorted;
+    }
+
+    @Test
+    public void emitsEveryPositionOfThePlaylist() throws Exception {
+        String xml = HEADER
+                + "<key>Tracks</key><dict>\n"
+                + track(10, "Ten", "file:///Music/10.mp3")
+                + track(20, "Twenty", "file:///Music/20.mp3")
+                + track(30, "Thirty", "file:///Music/30.mp3")
+                + "</dict>\n"
+                + "<key>Playlists</key><array>\n"
+                + playlist("Library", true, 10, 20, 30)
+                + playlist("Mix", false, 30, 10, 20, 10)
+                + "</array>\n</dict>\n</plist>\n";
+
+        List<Track> tracks = byPosition(parse(xml));
+        assertEquals(4, tracks.size());
+        String[] titles = {"Thirty", "Ten", "Twenty", "Ten"};
+        for (int i = 0; i < titles.length; i++) {
+            assertEquals(titles[i], tracks.get(i).title);
+            assertEquals(i, tracks.get(i).position);
+        }
+
+        Track first = tracks.get(0);
+        assertEquals("Artist", first.artist);
+        assertEquals("Album", first.album);
+        assertEquals(200, first.duration);
+        assertEquals("file:///Music/30.mp3", first.uri);
+        assertNotSame(tracks.get(1), tracks.get(3));
+    }
+
+    @Test
+    public void emitsEveryTrackOnceItsDictIsParsed() throws Exception {
+        String xml = HEADER
+                + "<key>Tracks</key><dict>\n"
+                + track(10, "Ten", "file:///Music/10.mp3")
+                + track(20, "Twenty", "file:///Music/20.mp3")
+                + track(30, "Thirty", "file:///Music/30.mp3")
+                + "</dict>\n"
+                + "<key>Playlists</key><array>\n"
+                + playlist("Mix", false, 30, 10, 20, 10)
+                + "</array>\n</dict>\n</plist>\n";
+
+        // in the order of the Tracks dict, nothing is held until the playlist order is known
+        List<Track> tracks = parse(xml);
+        String[] titles = {"Ten", "Ten", "Twenty", "Thirty"};
+        int[] positions = {1, 3, 2, 0};
+        for (int i = 0; i < titles.length; i++) {
+            assertEquals(titles[i], tracks.get(i).title);
+            assertEquals(positions[i], tracks.get(i).position);
+        }
+    }
+
+    @Test
+    public void leavesOutMissingTracksWithoutGaps() throws Exception {
+        String xml = HEADER
+                + "<key>Tracks</key><dict>\n"
+                + track(1, "One", "file:///1.mp3")
+                + track(3, "Three", "file:///3.mp3")
+                + "</dict>\n"
+                + "<key>Playlists</key><array>\n"
+                + playlist("Mix", false, 3, 2, 1)
+                + "</array>\n</dict>\n</plist>\n";
+
+        List<Track> tracks = byPosition(parse(xml));
+        assertEquals(2, tracks.size());
+        assertEquals("Three", tracks.get(0).title);
+        assertEquals(0, tracks.get(0).position);
+        assertEquals("One", tracks.get(1).title);
+        assertEquals(1, tracks.get(1).position);
+    }
+
+    @Test
+    public void withoutPlaylistEmitsEveryTrackInFileOrder() throws Exception {
+        String xml = HEADER
+                + "<key>Tracks</key><dict>\n"
+                + track(7, "Seven", "file:///7.mp3")
+                + track(2, "Two", "file:///2.mp3")
+                + "</dict>\n</dict>\n</plist>\n";
+
+        List<Track> tracks = parse(xml);
+        assertEquals(2, tracks.size());
+        assertEquals("Seven", tracks.get(0).title);
+        assertEquals(0, tracks.get(0).position);
+        assertEquals("Two", tracks.get(1).title);
+        assertEquals(1, tracks.get(1).position);
+    }
+
+    @Test
+    public void decodesLocation() {
+        assertEquals("file:///Música/a b.mp3",
+                XMLPlaylistParser.decodeLocation("file:///M%C3%BAsica/a%20b.mp3"));
+        assertEquals("file:///plain.mp3", XMLPlaylistParser.decodeLocation("file:///plain.mp3"));
+        assertEquals("100%", XMLPlaylistParser.decodeLocation("100%"));
+    }
+}